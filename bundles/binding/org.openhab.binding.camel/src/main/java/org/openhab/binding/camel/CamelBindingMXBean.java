@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.camel;
+
+/**
+ * The metrics of a camel binding. They are published over JMX as
+ * org.openhab.binding.camel:type=Binding,name=&lt;binding&gt; and count since the
+ * binding was last configured.
+ * 
+ * @author elakito
+ * @since 1.6.0
+ */
+public interface CamelBindingMXBean {
+    String getName();
+    /** the number of cached transformation results or -1 if the cache is disabled */
+    int getTransformationCacheEntries();
+    /** the approximate number of bytes occupied by the cached transformation results */
+    long getTransformationCacheMemoryUsage();
+    long getTransformationCacheHits();
+    long getTransformationCacheMisses();
+    long getTransformationCacheEvictions();
+    /** the number of inbound updates suppressed as they did not change the state of their item */
+    long getSuppressedUpdates();
+}
@@ -10,6 +10,7 @@ package org.openhab.binding.camel;
 
 import java.util.List;
 
+import org.openhab.binding.common.StateParser;
 import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.items.Item;
 import org.openhab.core.types.Command;
@@ -23,7 +24,11 @@ public interface CamelBindingProvider extends BindingProvider {
     String getName(String itemName);
     String getTransformation(String itemName, Command command);
     String getTransformation(String itemName);
+    long getDebounce(String itemName, Command command);
+    List<String> getDebounceBypass(String itemName, Command command);
     List<String> getItemNames(Command command);
+    List<String> getItemNamesByName(String name);
     Class<? extends Item> getItemType(String itemName);
+    StateParser getStateParser(String itemName);
     List<Command> getCommands(String itemName);
 }
@@ -8,25 +8,18 @@
  */
 package org.openhab.binding.camel.internal;
 
+import java.util.Arrays;
 import java.util.Dictionary;
+import java.util.HashSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.camel.CamelBindingProvider;
+import org.openhab.binding.common.DuplicateStateFilter;
+import org.openhab.binding.common.StateParser;
 import org.openhab.core.binding.AbstractBinding;
 import org.openhab.core.binding.BindingProvider;
-import org.openhab.core.items.Item;
-import org.openhab.core.library.items.ContactItem;
-import org.openhab.core.library.items.DateTimeItem;
-import org.openhab.core.library.items.NumberItem;
-import org.openhab.core.library.items.RollershutterItem;
-import org.openhab.core.library.items.SwitchItem;
-import org.openhab.core.library.types.DateTimeType;
-import org.openhab.core.library.types.DecimalType;
-import org.openhab.core.library.types.OnOffType;
-import org.openhab.core.library.types.OpenClosedType;
-import org.openhab.core.library.types.PercentType;
-import org.openhab.core.library.types.StringType;
 import org.openhab.core.transform.TransformationHelper;
 import org.openhab.core.transform.TransformationService;
 import org.openhab.core.types.Command;
@@ -47,22 +40,39 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
     private static final Pattern EXTRACT_FUNCTION_PATTERN = Pattern.compile("(.*?)\\((.*)\\)");
 
     protected AbstractCamelConnectorManager<P> connectorManager;
+
+    /** the cache of the results of pure transformations or null if caching is disabled */
+    private volatile TransformationCache transformationCache;
+
+    /** drops the inbound updates which do not change the state of their item or null to post all updates */
+    private volatile DuplicateStateFilter duplicateFilter;
+
+    /** the counters of the transformation cache and the duplicate filter published over JMX */
+    private final BindingMetrics metrics;
         
     public AbstractCamelConnectorBinding() {
         this.connectorManager = createConnectorManager(this);
+        this.metrics = new BindingMetrics(this, getClass().getSimpleName());
     }
 
     public void activate() {
         logger.debug("activate");
         super.activate();
         connectorManager.init();
+        metrics.register();
     }
     
     public void deactivate() {
         // deallocate resources here that are no longer needed and 
         // should be reset when activating this binding again
         logger.debug("deactivate");
+        metrics.unregister();
         connectorManager.release();
+        TransformationCache cache = transformationCache;
+        if (cache != null) {
+            logger.debug("releasing {}", cache);
+            cache.clear();
+        }
     }
 
 
@@ -83,32 +93,16 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
     void postToBus(String itemName, String message, CamelBindingProvider provider) {
         String transformedMessage = transformMessage(provider.getTransformation(itemName), message);
         
-        Class<? extends Item> itemType = provider.getItemType(itemName);
-        State state = createState(itemType, transformedMessage);
+        StateParser stateParser = provider.getStateParser(itemName);
+        State state = stateParser != null ? stateParser.parse(transformedMessage) : null;
                 
         if (state != null) {
-            eventPublisher.postUpdate(itemName, state);
-        }
-    }
-
-    protected static State createState(Class<? extends Item> itemType, String message) {
-        try {
-            if (itemType.isAssignableFrom(NumberItem.class)) {
-                return DecimalType.valueOf(message);
-            } else if (itemType.isAssignableFrom(ContactItem.class)) {
-                return OpenClosedType.valueOf(message);
-            } else if (itemType.isAssignableFrom(SwitchItem.class)) {
-                return OnOffType.valueOf(message);
-            } else if (itemType.isAssignableFrom(RollershutterItem.class)) {
-                return PercentType.valueOf(message);
-            } else if (itemType.isAssignableFrom(DateTimeItem.class)) {
-                return DateTimeType.valueOf(message);
-            } else {
-                return StringType.valueOf(message);
+            DuplicateStateFilter filter = duplicateFilter;
+            if (filter != null && !filter.accept(itemName, state)) {
+                logger.trace("suppressing the unchanged state {} of item={}", state, itemName);
+                return;
             }
-        } catch (Exception e) {
-            logger.debug("Couldn't create state of type '{}' for value '{}'", itemType, message);
-            return StringType.valueOf(message);
+            eventPublisher.postUpdate(itemName, state);
         }
     }
 
@@ -134,6 +128,49 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
         logger.debug("Configuration updated with provided {}", config != null);
         if (config != null) {
             // setup
+            // the results of the transformations of the types listed in pureTransformations=<type>,<type> are cached
+            // within transformationCacheBudget=<bytes>, the approximate memory the cached results may occupy
+            long cacheBudget = 0;
+            String cacheBudgetString = (String) config.get("transformationCacheBudget");
+            if (StringUtils.isNotBlank(cacheBudgetString)) {
+                try {
+                    cacheBudget = Long.parseLong(cacheBudgetString.trim());
+                } catch (NumberFormatException e) {
+                    throw new ConfigurationException("transformationCacheBudget", "invalid number of bytes: " + cacheBudgetString);
+                }
+            }
+            String pureTransformationsString = (String) config.get("pureTransformations");
+            TransformationCache previous = transformationCache;
+            if (cacheBudget > 0 && StringUtils.isNotBlank(pureTransformationsString)) {
+                transformationCache = new TransformationCache(cacheBudget, 
+                    new HashSet<String>(Arrays.asList(StringUtils.stripAll(pureTransformationsString.split(",")))));
+            } else {
+                transformationCache = null;
+            }
+            if (previous != null) {
+                logger.debug("replacing {}", previous);
+            }
+
+            // the inbound updates not changing the state of their item are dropped if suppressDuplicates=true,
+            // an unchanged state is posted again after duplicateRefresh=<intervalInMs> if set
+            DuplicateStateFilter previousFilter = duplicateFilter;
+            if (Boolean.parseBoolean((String) config.get("suppressDuplicates"))) {
+                long duplicateRefresh = 0;
+                String duplicateRefreshString = (String) config.get("duplicateRefresh");
+                if (StringUtils.isNotBlank(duplicateRefreshString)) {
+                    try {
+                        duplicateRefresh = Long.parseLong(duplicateRefreshString.trim());
+                    } catch (NumberFormatException e) {
+                        throw new ConfigurationException("duplicateRefresh", "invalid number: " + duplicateRefreshString);
+                    }
+                }
+                duplicateFilter = new DuplicateStateFilter(duplicateRefresh);
+            } else {
+                duplicateFilter = null;
+            }
+            if (previousFilter != null) {
+                logger.debug("suppressed {} duplicate updates", previousFilter.getSuppressedCount());
+            }
         }
         for (CamelBindingProvider provider : providers) {
             for (String itemName : provider.getItemNames()) {
@@ -157,9 +194,13 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
     private void releaseItem(String itemName) {
         logger.debug("release item={}", itemName);
         connectorManager.remove(itemName);
+        DuplicateStateFilter filter = duplicateFilter;
+        if (filter != null) {
+            filter.remove(itemName);
+        }
     }
         
-    protected static String transformMessage(String transformation, String message) {
+    protected String transformMessage(String transformation, String message) {
         logger.debug("transforming message {} using transform {}", message, transformation);
         String transformedMessage = message;
         if (transformation != null) {
@@ -168,10 +209,19 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
                 String transformationType = parts[0];
                 String transformationFunction = parts[1];
             
-                TransformationService transformationService = 
+                TransformationCache cache = transformationCache;
+                boolean cacheable = cache != null && message != null && cache.isCacheable(transformationType);
+                String cachedMessage = cacheable ? cache.get(transformation, message) : null;
+
+                TransformationService transformationService = cachedMessage != null ? null :
                     TransformationHelper.getTransformationService(CamelActivator.getContext(), transformationType);
-                if (transformationService != null) {
+                if (cachedMessage != null) {
+                    transformedMessage = cachedMessage;
+                } else if (transformationService != null) {
                     transformedMessage = transformationService.transform(transformationFunction, message);
+                    if (cacheable) {
+                        cache.put(transformation, message, transformedMessage);
+                    }
                 } else {
                     logger.warn("couldn't transform message because transformationService of type '{}' is unavailable", transformationType);
                 }
@@ -200,5 +250,33 @@ public abstract class AbstractCamelConnectorBinding<P extends CamelBindingProvid
         return new String[] { type, pattern };
     }
     
+    /**
+     * Records the states set on the event bus so that a later inbound update restoring
+     * the previous state of an item is not suppressed as a duplicate.
+     */
+    @Override
+    public void receiveUpdate(String itemName, State newState) {
+        DuplicateStateFilter filter = duplicateFilter;
+        if (filter != null) {
+            filter.update(itemName, newState);
+        }
+        super.receiveUpdate(itemName, newState);
+    }
+
+    /**
+     * Returns the number of suppressed duplicate updates since the binding was last configured.
+     */
+    long getSuppressedUpdateCount() {
+        DuplicateStateFilter filter = duplicateFilter;
+        return filter != null ? filter.getSuppressedCount() : 0;
+    }
+
+    /**
+     * Returns the cache of the transformation results or null if caching is disabled.
+     */
+    TransformationCache getTransformationCache() {
+        return transformationCache;
+    }
+
     protected abstract AbstractCamelConnectorManager<P> createConnectorManager(AbstractCamelConnectorBinding<P> binding);
 }
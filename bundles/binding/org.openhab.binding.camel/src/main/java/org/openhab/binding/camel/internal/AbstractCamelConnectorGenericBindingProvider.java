@@ -9,13 +9,19 @@
 package org.openhab.binding.camel.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.camel.CamelBindingProvider;
+import org.openhab.binding.common.BindingOptions;
+import org.openhab.binding.common.ItemIndex;
+import org.openhab.binding.common.StateParser;
 import org.openhab.core.binding.BindingConfig;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.types.StringType;
@@ -30,6 +36,13 @@ import org.slf4j.LoggerFactory;
 /**
  * This class contains the common part of the dispatcher and provider binding configuration.
  * 
+ * The name may be followed by options in the form {<name>=<value>&<name>=<value>}:
+ * 
+ * debounce=<window>, debounceBypass=<command>,<command> - see {@link BindingOptions}
+ * 
+ * The command * binds all the commands which are not bound explicitly, e.g.
+ * cameldispatcher=">[*://dimmer{debounce=250}:'']" for Dimmer Items
+ * 
  * @see CamelDispatcherGenericBindingProvider
  * @see CamelProviderGenericBindingProvider
  * 
@@ -47,6 +60,13 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
     private static final Pattern BASE_CONFIG_PATTERN = Pattern.compile("([<|>]\\[.*?\\])*");
     private static final Pattern  CONFIG_PATTERN = Pattern.compile("(<|>)\\[(.*?):?(//.*):\'?(.*?)\'?\\]");
 
+    /** the names of the options which may follow the name */
+    private static final List<String> OPTION_NAMES = Arrays.asList(BindingOptions.DEBOUNCE, BindingOptions.DEBOUNCE_BYPASS);
+
+    // the items by the commands and the endpoint names of their bindings, kept up to date as the configurations change
+    private final ItemIndex<Command> commandIndex = new ItemIndex<Command>();
+    private final ItemIndex<String> nameIndex = new ItemIndex<String>();
+
     /**
      * {@inheritDoc}
      */
@@ -72,6 +92,7 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
                 
         CamelConnectorBindingConfig config = new CamelConnectorBindingConfig();
         config.itemType = item.getClass();
+        config.stateParser = StateParser.forItemType(config.itemType);
         
         Matcher matcher = BASE_CONFIG_PATTERN.matcher(bindingConfig);
         
@@ -102,13 +123,18 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
                 String commandStr = matcher.group(2);
                 String name = matcher.group(3);
                 String transformation = matcher.group(4);
+                Map<String, String> options = BindingOptions.parse(name, OPTION_NAMES);
+                name = BindingOptions.stripOptions(name);
                 if (logger.isDebugEnabled()) {
-                        logger.debug("adding a binding for direction={}, command={}, name={}, transformation={}",
-                        directionStr, commandStr, name, transformation);
+                        logger.debug("adding a binding for direction={}, command={}, name={}, transformation={}, options={}",
+                        directionStr, commandStr, name, transformation, options);
                 }
 
                 configElement = new CamelConnectorBindingConfigElement(name, transformation);
-                Command command = commandStr.length() == 0 ? IN_COMMAND_KEY : createCommandFromString(item, commandStr);
+                configElement.debounce = BindingOptions.getDebounce(options, bindingConfig);
+                configElement.debounceBypass = BindingOptions.getDebounceBypass(options);
+                Command command = commandStr.length() == 0 ? IN_COMMAND_KEY 
+                    : WILDCARD_COMMAND_KEY.toString().equals(commandStr) ? WILDCARD_COMMAND_KEY : createCommandFromString(item, commandStr);
 
                 config.put(command, configElement);
             }
@@ -118,11 +144,14 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
     protected class CamelConnectorBindingConfig extends HashMap<Command, CamelConnectorBindingConfigElement>implements BindingConfig {
 		private static final long serialVersionUID = 8524944700047776248L;
 		Class<? extends Item> itemType;
+		StateParser stateParser;
     }
     
     static class CamelConnectorBindingConfigElement implements BindingConfig {
         private String name;
         private String transformation;
+        private long debounce;
+        private List<String> debounceBypass;
         
         public CamelConnectorBindingConfigElement(String name, String transformation) {
             this.name = name;
@@ -137,9 +166,18 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
             return transformation;
         }
         
+        public long getDebounce() {
+            return debounce;
+        }
+        
+        public List<String> getDebounceBypass() {
+            return debounceBypass;
+        }
+        
         @Override
         public String toString() {
-            return "CamelConnectorBindingConfigElement [name=" + name + ", transformation=" + transformation + "]";
+            return "CamelConnectorBindingConfigElement [name=" + name + ", transformation=" + transformation 
+                + ", debounce=" + debounce + ", debounceBypass=" + debounceBypass + "]";
         }
         
     }
@@ -176,16 +214,67 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
         return getTransformation(itemName, IN_COMMAND_KEY);
     }
 
+    @Override
+    public long getDebounce(String itemName, Command command) {
+        CamelConnectorBindingConfig config = (CamelConnectorBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getDebounce() : 0;
+    }
+
+    @Override
+    public List<String> getDebounceBypass(String itemName, Command command) {
+        CamelConnectorBindingConfig config = (CamelConnectorBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getDebounceBypass() : null;
+    }
+
     @Override
     public List<String> getItemNames(Command command) {
-        List<String> bindings = new ArrayList<String>();
-        for (String itemName : bindingConfigs.keySet()) {
-            CamelConnectorBindingConfig config = (CamelConnectorBindingConfig) bindingConfigs.get(itemName);
-            if (config.containsKey(command)) {
-                bindings.add(itemName);
+        return commandIndex.get(command);
+    }
+
+    @Override
+    public List<String> getItemNamesByName(String name) {
+        return nameIndex.get(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addBindingConfig(Item item, BindingConfig config) {
+        unindex(item.getName());
+        index(item.getName(), (CamelConnectorBindingConfig) config);
+        super.addBindingConfig(item, config);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeConfigurations(String context) {
+        Set<Item> items = contextMap.get(context);
+        if (items != null) {
+            for (Item item : items) {
+                unindex(item.getName());
+            }
+        }
+        super.removeConfigurations(context);
+    }
+
+    private void index(String itemName, CamelConnectorBindingConfig config) {
+        for (Map.Entry<Command, CamelConnectorBindingConfigElement> entry : config.entrySet()) {
+            commandIndex.add(entry.getKey(), itemName);
+            nameIndex.add(entry.getValue().getName(), itemName);
+        }
+    }
+
+    private void unindex(String itemName) {
+        CamelConnectorBindingConfig config = (CamelConnectorBindingConfig) bindingConfigs.get(itemName);
+        if (config != null) {
+            for (Map.Entry<Command, CamelConnectorBindingConfigElement> entry : config.entrySet()) {
+                commandIndex.remove(entry.getKey(), itemName);
+                nameIndex.remove(entry.getValue().getName(), itemName);
             }
         }
-        return bindings;
     }
 
     @Override
@@ -194,6 +283,12 @@ public abstract class AbstractCamelConnectorGenericBindingProvider extends Abstr
         return config != null ? config.itemType : null;
     }
 
+    @Override
+    public StateParser getStateParser(String itemName) {
+        CamelConnectorBindingConfig config = (CamelConnectorBindingConfig) bindingConfigs.get(itemName);
+        return config != null ? config.stateParser : null;
+    }
+
     @Override
     public List<Command> getCommands(String itemName) {
         List<Command> commands = new ArrayList<Command>();
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.camel.internal;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openhab.binding.camel.CamelBindingMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of an {@link AbstractCamelConnectorBinding}, read from its current
+ * transformation cache and duplicate filter.
+ *
+ * @since 1.6.0
+ */
+class BindingMetrics implements CamelBindingMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(BindingMetrics.class);
+
+    private final AbstractCamelConnectorBinding<?> binding;
+    private final String name;
+
+    private ObjectName objectName;
+
+    BindingMetrics(AbstractCamelConnectorBinding<?> binding, String name) {
+        this.binding = binding;
+        this.name = name;
+    }
+
+    /**
+     * Publishes the metrics over JMX.
+     */
+    synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("org.openhab.binding.camel:type=Binding,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Failed to register the metrics of {} over JMX: {}", name, e.getMessage());
+            objectName = null;
+        }
+    }
+
+    synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.debug("Failed to unregister the metrics of {} from JMX: {}", name, e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTransformationCacheEntries() {
+        TransformationCache cache = binding.getTransformationCache();
+        return cache != null ? cache.size() : -1;
+    }
+
+    public long getTransformationCacheMemoryUsage() {
+        TransformationCache cache = binding.getTransformationCache();
+        return cache != null ? cache.getMemoryUsage() : 0;
+    }
+
+    public long getTransformationCacheHits() {
+        TransformationCache cache = binding.getTransformationCache();
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    public long getTransformationCacheMisses() {
+        TransformationCache cache = binding.getTransformationCache();
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    public long getTransformationCacheEvictions() {
+        TransformationCache cache = binding.getTransformationCache();
+        return cache != null ? cache.getEvictions() : 0;
+    }
+
+    public long getSuppressedUpdates() {
+        return binding.getSuppressedUpdateCount();
+    }
+
+    @Override
+    public String toString() {
+        return "BindingMetrics [name=" + name + ", transformationCache=" + binding.getTransformationCache()
+            + ", suppressedUpdates=" + getSuppressedUpdates() + "]";
+    }
+}
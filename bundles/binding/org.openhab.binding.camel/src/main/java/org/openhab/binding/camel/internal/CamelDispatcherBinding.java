@@ -9,9 +9,16 @@
 package org.openhab.binding.camel.internal;
 
 import static org.openhab.binding.camel.internal.CamelDispatcherGenericBindingProvider.CHANGED_COMMAND_KEY;
+import static org.openhab.binding.camel.internal.CamelDispatcherGenericBindingProvider.WILDCARD_COMMAND_KEY;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import org.openhab.binding.camel.CamelBindingProvider;
 import org.openhab.binding.camel.CamelDispatcherBindingProvider;
+import org.openhab.binding.common.CommandDebouncer;
+import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
 import org.openhab.core.types.Type;
@@ -29,6 +36,40 @@ public class CamelDispatcherBinding extends AbstractCamelConnectorBinding<CamelD
 
     private static final Logger logger = LoggerFactory.getLogger(CamelDispatcherBinding.class);
 
+    // the thread sending the debounced commands and the debouncer conflating them
+    private ScheduledExecutorService debounceScheduler;
+    private volatile CommandDebouncer debouncer;
+
+    @Override
+    public void activate() {
+        debounceScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "camel-dispatcher-debounce");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        debouncer = new CommandDebouncer(debounceScheduler);
+        super.activate();
+    }
+
+    @Override
+    public void deactivate() {
+        super.deactivate();
+        debouncer.clear();
+        debounceScheduler.shutdownNow();
+    }
+
+    @Override
+    public void bindingChanged(BindingProvider provider, String itemName) {
+        // the pending command of a changed binding is discarded
+        CommandDebouncer d = debouncer;
+        if (d != null) {
+            d.remove(itemName);
+        }
+        super.bindingChanged(provider, itemName);
+    }
+
     /**
      * @{inheritDoc}
      */
@@ -53,8 +94,13 @@ public class CamelDispatcherBinding extends AbstractCamelConnectorBinding<CamelD
         sendToCamel(itemName, CHANGED_COMMAND_KEY, newState);
     }
 
-    private void sendToCamel(String itemName, Command command, Type type) {
-        CamelBindingProvider provider = findFirstMatchingBindingProvider(itemName, command);
+    private void sendToCamel(final String itemName, final Command command, Type type) {
+        Command key = command;
+        CamelBindingProvider provider = findFirstMatchingBindingProvider(itemName, key);
+        if (provider == null && !CHANGED_COMMAND_KEY.equals(command)) {
+            key = WILDCARD_COMMAND_KEY;
+            provider = findFirstMatchingBindingProvider(itemName, key);
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debug("sendToCamel: item={}, command={}, type={}", itemName, command, type);
@@ -64,8 +110,22 @@ public class CamelDispatcherBinding extends AbstractCamelConnectorBinding<CamelD
             logger.trace("doesn't find matching binding provider [itemName={}, command={}]", itemName, command);
             return;
         }
-        String name = provider.getName(itemName, command);
-        String transformation = provider.getTransformation(itemName, command);
+        final String name = provider.getName(itemName, key);
+        final String transformation = provider.getTransformation(itemName, key);
+        long debounce = provider.getDebounce(itemName, key);
+        if (debounce > 0) {
+            debouncer.submit(itemName, debounce, CommandDebouncer.isBypass(provider.getDebounceBypass(itemName, key), command), 
+                new Runnable() {
+                    public void run() {
+                        sendToCamel(name, transformation, command);
+                    }
+                });
+        } else {
+            sendToCamel(name, transformation, command);
+        }
+    }
+
+    private void sendToCamel(String name, String transformation, Command command) {
         String transformedMessage = transformMessage(transformation, command.toString());
         try {
         	((CamelDispatcherManager)connectorManager).sendTextMessage(name, transformedMessage);
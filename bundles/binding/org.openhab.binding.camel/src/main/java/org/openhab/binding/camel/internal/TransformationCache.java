@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.camel.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A least-recently-used cache of transformation results keyed by the transformation
+ * and its input message. Only transformations whose type has been declared pure are
+ * cached, as the result of any other transformation may change between invocations.
+ *
+ * The size of the cache is bounded by an approximate memory budget in bytes; the
+ * least recently used entries are evicted once the budget is exceeded.
+ *
+ * @author elakito
+ * @since 1.6.0
+ */
+class TransformationCache {
+    // rough per-entry overhead of the map entry, the key and the two strings
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long memoryBudget;
+    private final Set<String> pureTypes;
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<Key, String>(16, 0.75f, true);
+    private long memoryUsage;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param memoryBudget the approximate number of bytes the cached entries may occupy
+     * @param pureTypes the transformation types (e.g. MAP) whose results may be cached
+     */
+    TransformationCache(long memoryBudget, Set<String> pureTypes) {
+        this.memoryBudget = memoryBudget;
+        this.pureTypes = Collections.unmodifiableSet(new HashSet<String>(pureTypes));
+    }
+
+    boolean isCacheable(String transformationType) {
+        return pureTypes.contains(transformationType);
+    }
+
+    synchronized String get(String transformation, String message) {
+        String value = entries.get(new Key(transformation, message));
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    synchronized void put(String transformation, String message, String value) {
+        if (value == null) {
+            return;
+        }
+        Key key = new Key(transformation, message);
+        long size = sizeOf(key, value);
+        if (size > memoryBudget) {
+            // never cache an entry that would flush the whole cache
+            return;
+        }
+        String previous = entries.put(key, value);
+        if (previous != null) {
+            memoryUsage -= sizeOf(key, previous);
+        }
+        memoryUsage += size;
+
+        Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            Map.Entry<Key, String> eldest = it.next();
+            memoryUsage -= sizeOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        memoryUsage = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TransformationCache [entries=" + entries.size() + ", memoryUsage=" + memoryUsage
+            + ", memoryBudget=" + memoryBudget + ", hits=" + hits + ", misses=" + misses
+            + ", evictions=" + evictions + "]";
+    }
+
+    private static long sizeOf(Key key, String value) {
+        return ENTRY_OVERHEAD + 2L * (key.transformation.length() + key.message.length() + value.length());
+    }
+
+    private static final class Key {
+        private final String transformation;
+        private final String message;
+        private final int hash;
+
+        Key(String transformation, String message) {
+            this.transformation = transformation;
+            this.message = message;
+            this.hash = 31 * transformation.hashCode() + message.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && transformation.equals(other.transformation) && message.equals(other.message);
+        }
+    }
+}
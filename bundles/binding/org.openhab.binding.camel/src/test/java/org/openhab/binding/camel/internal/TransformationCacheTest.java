@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.camel.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * @since 1.6.0
+ */
+public class TransformationCacheTest {
+    // every entry below takes 128 + 2 * (10 + 1 + 1) bytes
+    private static final long ENTRY_SIZE = 152;
+    private static final String MAP = "MAP(a.map)";
+
+    private final TransformationCache cache = new TransformationCache(2 * ENTRY_SIZE + 50,
+                                                                      Collections.singleton("MAP"));
+
+    @Test
+    public void cachesOnlyPureTransformationTypes() {
+        assertTrue(cache.isCacheable("MAP"));
+        assertFalse(cache.isCacheable("JS"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        assertNull(cache.get(MAP, "1"));
+        cache.put(MAP, "1", "x");
+        assertEquals("x", cache.get(MAP, "1"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(ENTRY_SIZE, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntryOverBudget() {
+        cache.put(MAP, "1", "x");
+        cache.put(MAP, "2", "y");
+        // makes 2 the least recently used entry
+        cache.get(MAP, "1");
+        cache.put(MAP, "3", "z");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * ENTRY_SIZE, cache.getMemoryUsage());
+        assertEquals("x", cache.get(MAP, "1"));
+        assertNull(cache.get(MAP, "2"));
+        assertEquals("z", cache.get(MAP, "3"));
+    }
+
+    @Test
+    public void replacingAnEntryAccountsForTheNewValueOnly() {
+        cache.put(MAP, "1", "x");
+        cache.put(MAP, "1", "yyyy");
+
+        assertEquals(1, cache.size());
+        assertEquals(ENTRY_SIZE + 6, cache.getMemoryUsage());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void skipsEntriesLargerThanTheBudget() {
+        cache.put(MAP, "1", "x");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            large.append('v');
+        }
+        cache.put(MAP, "2", large.toString());
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getEvictions());
+        assertNull(cache.get(MAP, "2"));
+    }
+
+    @Test
+    public void clearReleasesTheMemory() {
+        cache.put(MAP, "1", "x");
+        cache.put(MAP, "2", null);
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryUsage());
+    }
+}
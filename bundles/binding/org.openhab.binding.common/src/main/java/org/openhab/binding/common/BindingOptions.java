@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.openhab.model.item.binding.BindingConfigParseException;
+
+/**
+ * Parses the options which may follow the target of a binding configuration entry
+ * in the form {<name>=<value>&<name>=<value>}. The options shared by the bindings are:
+ *
+ * debounce=<window> - send only the latest outbound command of the item within the window in milliseconds
+ * debounceBypass=<command>,<command> - the commands sent immediately regardless of the debounce window,
+ *                  by default the commands of enumerated types such as ON, OFF, UP, DOWN or STOP
+ *
+ * @see CommandDebouncer
+ * @since 1.6.0
+ */
+public class BindingOptions {
+    public static final String DEBOUNCE = "debounce";
+    public static final String DEBOUNCE_BYPASS = "debounceBypass";
+
+    private BindingOptions() {
+    }
+
+    /**
+     * Returns the index of the options of the given target or -1 if it has none.
+     */
+    public static int indexOf(String target) {
+        int optionsStart = target.indexOf('{');
+        return optionsStart > 0 && target.endsWith("}") ? optionsStart : -1;
+    }
+
+    /**
+     * Parses the options of the given target.
+     *
+     * @param target the target followed by its options
+     * @param names the names of the accepted options
+     * @return the options by their names, empty if the target has none
+     * @throws BindingConfigParseException if an option is malformed or unknown
+     */
+    public static Map<String, String> parse(String target, List<String> names) throws BindingConfigParseException {
+        int optionsStart = indexOf(target);
+        if (optionsStart < 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> options = new HashMap<String, String>();
+        for (String option : target.substring(optionsStart + 1, target.length() - 1).split("&")) {
+            int eq = option.indexOf('=');
+            if (eq <= 0) {
+                throw new BindingConfigParseException("option '" + option + "' doesn't follow the expected pattern '<name>=<value>'");
+            }
+            String name = option.substring(0, eq).trim();
+            if (!names.contains(name)) {
+                throw new BindingConfigParseException("unknown option '" + name + "', expected one of " + names);
+            }
+            options.put(name, option.substring(eq + 1).trim());
+        }
+        return options;
+    }
+
+    /**
+     * Returns the given target without its options.
+     */
+    public static String stripOptions(String target) {
+        int optionsStart = indexOf(target);
+        return optionsStart < 0 ? target : target.substring(0, optionsStart);
+    }
+
+    /**
+     * Returns the debounce window in milliseconds or 0 if the option is not set.
+     *
+     * @throws BindingConfigParseException if the window is not a number
+     */
+    public static long getDebounce(Map<String, String> options, String bindingConfig) throws BindingConfigParseException {
+        String debounce = options.get(DEBOUNCE);
+        if (debounce == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(debounce);
+        } catch (NumberFormatException e) {
+            throw new BindingConfigParseException("invalid debounce option in '" + bindingConfig + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the commands bypassing the debounce window or null to bypass the commands of enumerated types.
+     *
+     * @see CommandDebouncer#isBypass(List, org.openhab.core.types.Command)
+     */
+    public static List<String> getDebounceBypass(Map<String, String> options) {
+        String debounceBypass = options.get(DEBOUNCE_BYPASS);
+        if (debounceBypass == null) {
+            return null;
+        }
+        return Collections.unmodifiableList(Arrays.asList(StringUtils.stripAll(debounceBypass.split(","))));
+    }
+}
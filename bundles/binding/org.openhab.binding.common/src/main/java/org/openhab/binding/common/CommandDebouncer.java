@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.core.types.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Conflates the outbound commands of an item within a debounce window.
+ *
+ * A command arriving while no window is open is sent immediately and opens the window.
+ * The commands arriving within the window replace each other and only the latest is sent
+ * when the window closes, which opens the next window. The bypassing commands are sent
+ * immediately and discard the pending command of the item, so that e.g. an OFF is not
+ * followed by a stale dimmer value.
+ *
+ * The debounced commands are sent on the thread of the scheduler, which must not be shared
+ * with time-critical tasks as the transformation of a command may be slow.
+ *
+ * @since 1.6.0
+ */
+public class CommandDebouncer {
+    private static final Logger logger = LoggerFactory.getLogger(CommandDebouncer.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+
+    public CommandDebouncer(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns true if the command bypasses the debounce window. Without an explicit list,
+     * the commands of enumerated types such as ON/OFF, UP/DOWN or OPEN/CLOSED bypass it.
+     *
+     * @param bypass the commands bypassing the window or null for the default
+     */
+    public static boolean isBypass(List<String> bypass, Command command) {
+        return bypass == null ? command instanceof Enum : bypass.contains(command.toString());
+    }
+
+    /**
+     * Sends the command of the item now or when its debounce window closes.
+     *
+     * @param itemName the item sending the command
+     * @param window the debounce window in milliseconds
+     * @param bypass whether the command is sent immediately
+     * @param send the task sending the command
+     */
+    public void submit(String itemName, long window, boolean bypass, Runnable send) {
+        Window w = windows.get(itemName);
+        if (w == null) {
+            Window newWindow = new Window(itemName);
+            w = windows.putIfAbsent(itemName, newWindow);
+            if (w == null) {
+                w = newWindow;
+            }
+        }
+        boolean sendNow;
+        synchronized (w) {
+            long now = System.currentTimeMillis();
+            if (bypass) {
+                if (w.pending != null) {
+                    logger.debug("discarding the pending command of item={}", itemName);
+                }
+                w.pending = null;
+                sendNow = true;
+            } else if (w.pending == null && now >= w.end) {
+                w.end = now + window;
+                w.window = window;
+                sendNow = true;
+            } else {
+                w.pending = send;
+                w.window = window;
+                if (w.closing == null) {
+                    w.closing = w.new Closing();
+                    w.closing.future = scheduler.schedule(w.closing, Math.max(0, w.end - now), TimeUnit.MILLISECONDS);
+                }
+                sendNow = false;
+            }
+        }
+        if (sendNow) {
+            send.run();
+        }
+    }
+
+    /**
+     * Discards the pending command of the item.
+     */
+    public void remove(String itemName) {
+        Window w = windows.remove(itemName);
+        if (w != null) {
+            synchronized (w) {
+                w.pending = null;
+                if (w.closing != null) {
+                    w.closing.future.cancel(false);
+                    w.closing = null;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (String itemName : windows.keySet()) {
+            remove(itemName);
+        }
+    }
+
+    private static final class Window {
+        private final String itemName;
+        // the end of the current window and its length in milliseconds
+        private long end;
+        private long window;
+        // the latest command waiting for the window to close and the task closing it
+        private Runnable pending;
+        private Closing closing;
+
+        Window(String itemName) {
+            this.itemName = itemName;
+        }
+
+        private void close(Closing c) {
+            Runnable send;
+            synchronized (this) {
+                // a closing task cancelled too late must not close the window
+                if (closing != c) {
+                    return;
+                }
+                closing = null;
+                send = pending;
+                pending = null;
+                if (send != null) {
+                    end = System.currentTimeMillis() + window;
+                }
+            }
+            if (send != null) {
+                try {
+                    send.run();
+                } catch (Exception e) {
+                    logger.error("Failed to send the debounced command of item=" + itemName, e);
+                }
+            }
+        }
+
+        private final class Closing implements Runnable {
+            private ScheduledFuture<?> future;
+
+            public void run() {
+                close(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.core.types.State;
+
+/**
+ * Suppresses the inbound updates which do not change the state of an item.
+ *
+ * The filter keeps the last state of each item together with the time it was last posted.
+ * An update equal to the last state is dropped unless the refresh interval has passed since
+ * the state was last posted. The states set on the event bus by others replace the last state,
+ * so that a device reporting its previous value again is not suppressed.
+ *
+ * @since 1.6.0
+ */
+public class DuplicateStateFilter {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    // the interval in milliseconds after which an unchanged state is posted again or 0 to never post it
+    private final long refreshInterval;
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public DuplicateStateFilter(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns true if the given inbound state of the item is to be posted.
+     */
+    public boolean accept(String itemName, State state) {
+        Entry entry = entries.get(itemName);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(itemName, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entry) {
+            if (state.equals(entry.state) && (refreshInterval <= 0 || now - entry.postedAt < refreshInterval)) {
+                suppressed.incrementAndGet();
+                return false;
+            }
+            entry.state = state;
+            entry.postedAt = now;
+        }
+        return true;
+    }
+
+    /**
+     * Records the state of the item received from the event bus.
+     */
+    public void update(String itemName, State state) {
+        Entry entry = entries.get(itemName);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.state = state;
+            }
+        }
+    }
+
+    public void remove(String itemName) {
+        entries.remove(itemName);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    private static final class Entry {
+        private State state;
+        private long postedAt;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the item names by a key such as the command or the url of their bindings.
+ *
+ * The lookups return immutable snapshots which are cached until the items of the key change,
+ * so repeated lookups neither scan the binding configurations nor copy the item names.
+ *
+ * @since 1.6.0
+ */
+public class ItemIndex<K> {
+    private final Map<K, Set<String>> items = new HashMap<K, Set<String>>();
+    private final Map<K, List<String>> snapshots = new HashMap<K, List<String>>();
+
+    public synchronized void add(K key, String itemName) {
+        Set<String> names = items.get(key);
+        if (names == null) {
+            names = new LinkedHashSet<String>();
+            items.put(key, names);
+        }
+        if (names.add(itemName)) {
+            snapshots.remove(key);
+        }
+    }
+
+    public synchronized void remove(K key, String itemName) {
+        Set<String> names = items.get(key);
+        if (names != null && names.remove(itemName)) {
+            if (names.isEmpty()) {
+                items.remove(key);
+            }
+            snapshots.remove(key);
+        }
+    }
+
+    public synchronized List<String> get(K key) {
+        List<String> snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            Set<String> names = items.get(key);
+            if (names == null) {
+                return Collections.emptyList();
+            }
+            snapshot = Collections.unmodifiableList(new ArrayList<String>(names));
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import java.math.BigDecimal;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.DateTimeItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the state of an item from a received message.
+ *
+ * The parser is resolved once per item type when the binding is configured so that the
+ * received messages do not need to walk the item type hierarchy. Messages which cannot
+ * be parsed into the state of the item are passed on as a {@link StringType}, without
+ * using exceptions for the common numeric and ON/OFF/OPEN/CLOSED values.
+ *
+ * @since 1.6.0
+ */
+public abstract class StateParser {
+    private static final Logger logger = LoggerFactory.getLogger(StateParser.class);
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static final StateParser NUMBER = new StateParser() {
+        @Override
+        public State parse(String message) {
+            return isDecimal(message) ? new DecimalType(new BigDecimal(message)) : fallback(message);
+        }
+    };
+
+    private static final StateParser CONTACT = new StateParser() {
+        @Override
+        public State parse(String message) {
+            if ("OPEN".equals(message)) {
+                return OpenClosedType.OPEN;
+            } else if ("CLOSED".equals(message)) {
+                return OpenClosedType.CLOSED;
+            }
+            return fallback(message);
+        }
+    };
+
+    private static final StateParser SWITCH = new StateParser() {
+        @Override
+        public State parse(String message) {
+            if ("ON".equals(message)) {
+                return OnOffType.ON;
+            } else if ("OFF".equals(message)) {
+                return OnOffType.OFF;
+            }
+            return fallback(message);
+        }
+    };
+
+    private static final StateParser ROLLERSHUTTER = new StateParser() {
+        @Override
+        public State parse(String message) {
+            if (isDecimal(message)) {
+                BigDecimal value = new BigDecimal(message);
+                if (value.signum() >= 0 && value.compareTo(HUNDRED) <= 0) {
+                    return new PercentType(value);
+                }
+            }
+            return fallback(message);
+        }
+    };
+
+    private static final StateParser DATETIME = new StateParser() {
+        @Override
+        public State parse(String message) {
+            try {
+                return DateTimeType.valueOf(message);
+            } catch (Exception e) {
+                return fallback(message);
+            }
+        }
+    };
+
+    private static final StateParser STRING = new StateParser() {
+        @Override
+        public State parse(String message) {
+            return StringType.valueOf(message);
+        }
+    };
+
+    /**
+     * Returns the parser for the states of the given item type.
+     */
+    public static StateParser forItemType(Class<? extends Item> itemType) {
+        if (itemType.isAssignableFrom(NumberItem.class)) {
+            return NUMBER;
+        } else if (itemType.isAssignableFrom(ContactItem.class)) {
+            return CONTACT;
+        } else if (itemType.isAssignableFrom(SwitchItem.class)) {
+            return SWITCH;
+        } else if (itemType.isAssignableFrom(RollershutterItem.class)) {
+            return ROLLERSHUTTER;
+        } else if (itemType.isAssignableFrom(DateTimeItem.class)) {
+            return DATETIME;
+        } else {
+            return STRING;
+        }
+    }
+
+    /**
+     * Creates the state of the given message.
+     */
+    public abstract State parse(String message);
+
+    private static State fallback(String message) {
+        logger.debug("Couldn't create state for value '{}'", message);
+        return StringType.valueOf(message);
+    }
+
+    /**
+     * Checks whether the given string is accepted by {@link BigDecimal#BigDecimal(String)}.
+     */
+    static boolean isDecimal(String s) {
+        if (s == null) {
+            return false;
+        }
+        int len = s.length();
+        int i = 0;
+        if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < len && isDigit(s.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < len && s.charAt(i) == '.') {
+            i++;
+            while (i < len && isDigit(s.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < len && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < len && isDigit(s.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            // keep clear of the exponent overflow of BigDecimal
+            if (exponentDigits == 0 || exponentDigits > 9) {
+                return false;
+            }
+        }
+        return i == len;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+
+/**
+ * @since 1.6.0
+ */
+public class CommandDebouncerTest {
+    private ManualScheduler scheduler;
+    private CommandDebouncer debouncer;
+    private final List<String> sent = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        debouncer = new CommandDebouncer(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void sendsOnlyTheLatestCommandWithinTheWindow() {
+        submit("item", 1000, false, "1");
+        submit("item", 1000, false, "2");
+        submit("item", 1000, false, "3");
+        assertEquals(Arrays.asList("1"), sent);
+        assertEquals(1, scheduler.tasks.size());
+
+        scheduler.runAll();
+        assertEquals(Arrays.asList("1", "3"), sent);
+    }
+
+    @Test
+    public void debouncesEachItemOnItsOwn() {
+        submit("a", 1000, false, "a1");
+        submit("b", 1000, false, "b1");
+        submit("a", 1000, false, "a2");
+        assertEquals(Arrays.asList("a1", "b1"), sent);
+
+        scheduler.runAll();
+        assertEquals(Arrays.asList("a1", "b1", "a2"), sent);
+    }
+
+    @Test
+    public void sendsImmediatelyOnceTheWindowHasPassed() {
+        submit("item", 0, false, "1");
+        submit("item", 0, false, "2");
+        assertEquals(Arrays.asList("1", "2"), sent);
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+
+    @Test
+    public void bypassingCommandDiscardsThePendingCommand() {
+        submit("item", 1000, false, "1");
+        submit("item", 1000, false, "2");
+        submit("item", 1000, true, "OFF");
+        assertEquals(Arrays.asList("1", "OFF"), sent);
+
+        scheduler.runAll();
+        assertEquals(Arrays.asList("1", "OFF"), sent);
+    }
+
+    @Test
+    public void removeCancelsTheClosingOfTheWindow() {
+        submit("item", 1000, false, "1");
+        submit("item", 1000, false, "2");
+        debouncer.remove("item");
+        assertTrue(scheduler.futures.get(0).isCancelled());
+
+        submit("item", 1000, false, "3");
+        // the closing of the removed window may already run when it is cancelled, it must not send anything
+        scheduler.runAll();
+        assertEquals(Arrays.asList("1", "3"), sent);
+    }
+
+    @Test
+    public void bypassesEnumeratedCommandsByDefault() {
+        assertTrue(CommandDebouncer.isBypass(null, OnOffType.ON));
+        assertFalse(CommandDebouncer.isBypass(null, new DecimalType(50)));
+        assertTrue(CommandDebouncer.isBypass(Arrays.asList("0", "100"), new DecimalType(100)));
+        assertFalse(CommandDebouncer.isBypass(Arrays.asList("0", "100"), OnOffType.OFF));
+    }
+
+    private void submit(String itemName, long window, boolean bypass, final String command) {
+        debouncer.submit(itemName, window, bypass, new Runnable() {
+            public void run() {
+                sent.add(command);
+            }
+        });
+    }
+
+    /**
+     * Records the scheduled tasks instead of running them, so that the tests close the windows.
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+        private final List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            ScheduledFuture<?> future = super.schedule(new Runnable() {
+                public void run() {
+                }
+            }, 1, TimeUnit.HOURS);
+            futures.add(future);
+            return future;
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+}
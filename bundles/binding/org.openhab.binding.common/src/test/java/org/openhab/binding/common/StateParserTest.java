@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+
+/**
+ * @since 1.6.0
+ */
+public class StateParserTest {
+
+    @Test
+    public void parsesNumbers() {
+        StateParser parser = StateParser.forItemType(NumberItem.class);
+        assertEquals(new DecimalType(new BigDecimal("-12.5")), parser.parse("-12.5"));
+        assertEquals(new DecimalType(new BigDecimal("1E+3")), parser.parse("1e3"));
+        assertEquals(new StringType("12 C"), parser.parse("12 C"));
+    }
+
+    @Test
+    public void parsesSwitchAndContactStates() {
+        assertSame(OnOffType.ON, StateParser.forItemType(SwitchItem.class).parse("ON"));
+        assertSame(OnOffType.OFF, StateParser.forItemType(SwitchItem.class).parse("OFF"));
+        assertEquals(new StringType("on"), StateParser.forItemType(SwitchItem.class).parse("on"));
+        assertSame(OpenClosedType.OPEN, StateParser.forItemType(ContactItem.class).parse("OPEN"));
+        assertSame(OpenClosedType.CLOSED, StateParser.forItemType(ContactItem.class).parse("CLOSED"));
+        assertEquals(new StringType("1"), StateParser.forItemType(ContactItem.class).parse("1"));
+    }
+
+    @Test
+    public void parsesRollershutterPercentsWithinRange() {
+        StateParser parser = StateParser.forItemType(RollershutterItem.class);
+        assertEquals(new PercentType(new BigDecimal("42")), parser.parse("42"));
+        assertEquals(new PercentType(new BigDecimal("100")), parser.parse("100"));
+        assertEquals(new StringType("101"), parser.parse("101"));
+        assertEquals(new StringType("-1"), parser.parse("-1"));
+    }
+
+    @Test
+    public void passesStringsOn() {
+        assertEquals(new StringType("42"), StateParser.forItemType(StringItem.class).parse("42"));
+    }
+
+    @Test
+    public void recognizesDecimalsLikeBigDecimal() {
+        for (String s : new String[] { "0", "+1", "-1", "1.", ".5", "-.5", "1.5e-3", "2E+10", "007" }) {
+            assertTrue(s, StateParser.isDecimal(s));
+            new BigDecimal(s);
+        }
+        for (String s : new String[] { null, "", "+", "-", ".", "e3", "1e", "1e+", "1.2.3", "0x10", "1 ", " 1",
+                                       "NaN", "1e1234567890" }) {
+            assertFalse(String.valueOf(s), StateParser.isDecimal(s));
+        }
+    }
+}
@@ -23,7 +23,11 @@ public interface WebsocketClientBindingProvider extends BindingProvider {
     String getUrl(String itemName);
     String getTransformation(String itemName, Command command);
     String getTransformation(String itemName);
+    long getDebounce(String itemName, Command command);
+    List<String> getDebounceBypass(String itemName, Command command);
+    String getRouteValue(String itemName);
     List<String> getItemNames(Command command);
+    List<String> getItemNamesByUrl(String url);
     Class<? extends Item> getItemType(String itemName);
     List<Command> getCommands(String itemName);
 }
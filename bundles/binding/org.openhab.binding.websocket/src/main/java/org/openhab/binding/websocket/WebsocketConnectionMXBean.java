@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket;
+
+/**
+ * The metrics of the connection to a websocket url. They are published over JMX as
+ * org.openhab.binding.websocket:type=Connection,url=&lt;url&gt; and as an OSGi service
+ * with the url in the service property {@link #URL_PROPERTY}.
+ * 
+ * @author elakito
+ * @since 1.6.0
+ */
+public interface WebsocketConnectionMXBean {
+    String URL_PROPERTY = "websocket.url";
+
+    String getUrl();
+    String getState();
+    long getFramesIn();
+    long getBytesIn();
+    long getFramesOut();
+    long getBytesOut();
+    /** the duration of the last successful connect in milliseconds or -1 if never connected */
+    long getConnectLatency();
+    long getConnectCount();
+    long getReconnectCount();
+    /** the total time in milliseconds during which the connection was not open */
+    long getDisconnectedTime();
+    long getOutboundFailures();
+    int getQueuedMessages();
+    long getDroppedMessages();
+    int getItemCount();
+    /** the number of requests waiting for their replies */
+    int getPendingRequests();
+    long getResponses();
+    long getRequestTimeouts();
+    /** the upper bounds in milliseconds of the buckets of the response time histogram, the last bucket is unbounded */
+    long[] getResponseTimeBuckets();
+    /** the number of responses by round-trip time bucket */
+    long[] getResponseTimeHistogram();
+    /** the round-trip time in microseconds of the last heartbeat ping or -1 if no pong was received */
+    long getPingRoundTripTime();
+    /** the number of heartbeat pings which were not answered in time */
+    long getHeartbeatTimeouts();
+    /** the extensions negotiated with the server or an empty string */
+    String getExtensions();
+    /** the sizes of the messages compressed by permessage-deflate on the wire and uncompressed */
+    long getCompressedBytesIn();
+    long getUncompressedBytesIn();
+    long getCompressedBytesOut();
+    long getUncompressedBytesOut();
+    /** the uncompressed size of the compressed messages divided by their compressed size or 0 if none */
+    double getCompressionRatio();
+    /** the total time in microseconds spent compressing and decompressing messages */
+    long getCompressionTime();
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.Type;
+
+/**
+ * Decodes binary websocket frames into item states and encodes commands into binary frames.
+ * 
+ * The format is one of int8, uint8, int16, uint16, int32, uint32, int64, float32, float64 
+ * with an optional be (default) or le suffix for the byte order, or utf8 or hex to treat 
+ * the frame as text. Numeric values are read at the given offset of the frame directly into 
+ * the state. Switch and contact items are ON or OPEN for any value other than 0.
+ * The encoded frames only contain the value.
+ * 
+ * @since 1.6.0
+ */
+class BinaryCodec {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private enum Kind { INT, UINT, FLOAT, UTF8, HEX }
+
+    private final String format;
+    private final Kind kind;
+    // the size of the numeric value in bytes
+    private final int size;
+    private final boolean littleEndian;
+    private final int offset;
+
+    private BinaryCodec(String format, Kind kind, int size, boolean littleEndian, int offset) {
+        this.format = format;
+        this.kind = kind;
+        this.size = size;
+        this.littleEndian = littleEndian;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates the codec for the specified format.
+     * 
+     * @param format the format, e.g. uint16 or float32le
+     * @param offset the offset of the value in the frame
+     * @return the codec
+     * @throws IllegalArgumentException if the format is unknown or the offset is negative
+     */
+    public static BinaryCodec valueOf(String format, int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative offset " + offset);
+        }
+        String f = format.toLowerCase();
+        if ("utf8".equals(f)) {
+            return new BinaryCodec(format, Kind.UTF8, 0, false, offset);
+        } else if ("hex".equals(f)) {
+            return new BinaryCodec(format, Kind.HEX, 0, false, offset);
+        }
+        boolean littleEndian = false;
+        if (f.endsWith("le")) {
+            littleEndian = true;
+            f = f.substring(0, f.length() - 2);
+        } else if (f.endsWith("be")) {
+            f = f.substring(0, f.length() - 2);
+        }
+        Kind kind;
+        if (f.startsWith("uint")) {
+            kind = Kind.UINT;
+            f = f.substring(4);
+        } else if (f.startsWith("int")) {
+            kind = Kind.INT;
+            f = f.substring(3);
+        } else if (f.startsWith("float")) {
+            kind = Kind.FLOAT;
+            f = f.substring(5);
+        } else {
+            throw new IllegalArgumentException("unknown binary format '" + format + "'");
+        }
+        int bits;
+        try {
+            bits = Integer.parseInt(f);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("unknown binary format '" + format + "'");
+        }
+        if (!(bits == 8 || bits == 16 || bits == 32 || bits == 64) || (kind == Kind.FLOAT && bits < 32) 
+            || (kind == Kind.UINT && bits == 64)) {
+            throw new IllegalArgumentException("unsupported binary format '" + format + "'");
+        }
+        return new BinaryCodec(format, kind, bits / 8, littleEndian, offset);
+    }
+
+    /**
+     * Returns true if the frames are decoded as text and passed on to the text processing.
+     */
+    public boolean isText() {
+        return kind == Kind.UTF8 || kind == Kind.HEX;
+    }
+
+    /**
+     * Decodes the text of the frame for the utf8 and hex formats.
+     * 
+     * @param data the frame
+     * @return the text or null if the frame is shorter than the offset
+     */
+    public String decodeText(byte[] data) {
+        if (data.length < offset) {
+            return null;
+        }
+        int length = data.length - offset;
+        if (kind == Kind.UTF8) {
+            return new String(data, offset, length, UTF8);
+        }
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xff;
+            chars[2 * i] = HEX_DIGITS[b >> 4];
+            chars[2 * i + 1] = HEX_DIGITS[b & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodes the numeric value of the frame into a state of the specified item type.
+     * 
+     * @param itemType the item type
+     * @param data the frame
+     * @return the state
+     * @throws IllegalArgumentException if the frame is too short
+     */
+    public State decode(Class<? extends Item> itemType, byte[] data) {
+        if (data.length < offset + size) {
+            throw new IllegalArgumentException("frame of " + data.length + " bytes is too short for " 
+                                               + format + " at offset " + offset);
+        }
+        long bits = 0;
+        for (int i = 0; i < size; i++) {
+            int b = data[offset + (littleEndian ? size - 1 - i : i)] & 0xff;
+            bits = (bits << 8) | b;
+        }
+        if (itemType.isAssignableFrom(SwitchItem.class)) {
+            return bits != 0 ? OnOffType.ON : OnOffType.OFF;
+        } else if (itemType.isAssignableFrom(ContactItem.class)) {
+            return bits != 0 ? OpenClosedType.OPEN : OpenClosedType.CLOSED;
+        }
+        DecimalType value;
+        if (kind == Kind.FLOAT) {
+            double d = size == 4 ? Float.intBitsToFloat((int)bits) : Double.longBitsToDouble(bits);
+            value = new DecimalType(BigDecimal.valueOf(d));
+        } else if (kind == Kind.INT) {
+            // sign extend the value
+            int shift = 64 - size * 8;
+            value = new DecimalType((bits << shift) >> shift);
+        } else {
+            value = new DecimalType(bits);
+        }
+        if (itemType.isAssignableFrom(NumberItem.class)) {
+            return value;
+        } else if (itemType.isAssignableFrom(RollershutterItem.class)) {
+            return new PercentType(value.toBigDecimal());
+        } else {
+            return new StringType(value.toString());
+        }
+    }
+
+    /**
+     * Encodes the command or state into a frame.
+     * 
+     * @param type the command or state
+     * @return the frame
+     * @throws IllegalArgumentException if the value cannot be represented in this format 
+     */
+    public byte[] encode(Type type) {
+        if (isText()) {
+            return encode(type.toString());
+        }
+        if (type instanceof DecimalType) {
+            return encodeNumber(((DecimalType)type).toBigDecimal());
+        } else if (type instanceof OnOffType) {
+            return encodeNumber(type == OnOffType.ON ? BigDecimal.ONE : BigDecimal.ZERO);
+        } else if (type instanceof OpenClosedType) {
+            return encodeNumber(type == OpenClosedType.OPEN ? BigDecimal.ONE : BigDecimal.ZERO);
+        } else if (type instanceof UpDownType) {
+            return encodeNumber(type == UpDownType.UP ? BigDecimal.ONE : BigDecimal.ZERO);
+        }
+        return encode(type.toString());
+    }
+
+    /**
+     * Encodes the text, e.g. the result of a transformation, into a frame.
+     * 
+     * @param text the text
+     * @return the frame
+     * @throws IllegalArgumentException if the text cannot be represented in this format 
+     */
+    public byte[] encode(String text) {
+        if (kind == Kind.UTF8) {
+            return text.getBytes(UTF8);
+        } else if (kind == Kind.HEX) {
+            if (text.length() % 2 != 0) {
+                throw new IllegalArgumentException("hex value '" + text + "' has an odd number of digits");
+            }
+            byte[] data = new byte[text.length() / 2];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte)Integer.parseInt(text.substring(2 * i, 2 * i + 2), 16);
+            }
+            return data;
+        }
+        return encodeNumber(new BigDecimal(text.trim()));
+    }
+
+    private byte[] encodeNumber(BigDecimal value) {
+        long bits;
+        if (kind == Kind.FLOAT) {
+            bits = size == 4 ? Float.floatToIntBits(value.floatValue()) & 0xffffffffL : Double.doubleToLongBits(value.doubleValue());
+        } else {
+            try {
+                bits = value.longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("value " + value + " cannot be represented as " + format);
+            }
+            // the range of the signed or unsigned integers of the size, int64 is the range of a long
+            if (size < 8) {
+                long min = kind == Kind.INT ? -(1L << (size * 8 - 1)) : 0;
+                long max = kind == Kind.INT ? (1L << (size * 8 - 1)) - 1 : (1L << (size * 8)) - 1;
+                if (bits < min || bits > max) {
+                    throw new IllegalArgumentException("value " + value + " is out of the range of " + format);
+                }
+            }
+        }
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[littleEndian ? i : size - 1 - i] = (byte)bits;
+            bits >>>= 8;
+        }
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryCodec [format=" + format + ", offset=" + offset + "]";
+    }
+}
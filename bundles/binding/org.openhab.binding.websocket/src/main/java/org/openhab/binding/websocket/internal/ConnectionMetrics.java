@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openhab.binding.websocket.WebsocketConnectionMXBean;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of a {@link WebsocketClient}. The counters updated by the io threads
+ * are striped, the connection events are rare enough to be recorded under the lock.
+ *
+ * @since 1.6.0
+ */
+class ConnectionMetrics implements WebsocketConnectionMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionMetrics.class);
+
+    private final WebsocketClient client;
+
+    private final StripedCounter framesIn = new StripedCounter();
+    private final StripedCounter bytesIn = new StripedCounter();
+    private final StripedCounter framesOut = new StripedCounter();
+    private final StripedCounter bytesOut = new StripedCounter();
+    private final StripedCounter outboundFailures = new StripedCounter();
+    // the sizes and the time spent compressing of the compressed messages
+    private final StripedCounter compressedBytesIn = new StripedCounter();
+    private final StripedCounter uncompressedBytesIn = new StripedCounter();
+    private final StripedCounter compressedBytesOut = new StripedCounter();
+    private final StripedCounter uncompressedBytesOut = new StripedCounter();
+    private final StripedCounter compressionTime = new StripedCounter();
+    // the round-trip time in nanoseconds of the last heartbeat ping or -1 and the number of missed pongs
+    private volatile long pingRoundTripTime = -1;
+    private final StripedCounter heartbeatTimeouts = new StripedCounter();
+    // the round-trip times of the requests by bucket and the number of requests without reply
+    private static final long[] RESPONSE_TIME_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+    private final AtomicLongArray responseTimes = new AtomicLongArray(RESPONSE_TIME_BUCKETS.length + 1);
+    private final StripedCounter requestTimeouts = new StripedCounter();
+
+    // the connection events, guarded by this
+    private long connectStarted;
+    private long connectLatency = -1;
+    private long connectCount;
+    private long reconnectCount;
+    private long disconnectedSince = System.nanoTime();
+    private long disconnectedTime;
+
+    private ObjectName objectName;
+    private ServiceRegistration registration;
+
+    ConnectionMetrics(WebsocketClient client) {
+        this.client = client;
+    }
+
+    void frameIn(String message) {
+        framesIn.increment();
+        bytesIn.add(utf8Length(message));
+    }
+
+    void frameIn(byte[] message) {
+        framesIn.increment();
+        bytesIn.add(message.length);
+    }
+
+    void frameOut(Object payload) {
+        framesOut.increment();
+        bytesOut.add(payload instanceof byte[] ? ((byte[]) payload).length : utf8Length((String) payload));
+    }
+
+    void inflated(int compressedSize, int size, long nanos) {
+        compressedBytesIn.add(compressedSize);
+        uncompressedBytesIn.add(size);
+        compressionTime.add(nanos);
+    }
+
+    void deflated(int size, int compressedSize, long nanos) {
+        uncompressedBytesOut.add(size);
+        compressedBytesOut.add(compressedSize);
+        compressionTime.add(nanos);
+    }
+
+    void pong(long rtt) {
+        pingRoundTripTime = rtt;
+    }
+
+    void heartbeatTimedOut() {
+        heartbeatTimeouts.increment();
+    }
+
+    void response(long rtt) {
+        long millis = rtt / 1000000L;
+        int bucket = 0;
+        while (bucket < RESPONSE_TIME_BUCKETS.length && millis >= RESPONSE_TIME_BUCKETS[bucket]) {
+            bucket++;
+        }
+        responseTimes.incrementAndGet(bucket);
+    }
+
+    void requestTimedOut() {
+        requestTimeouts.increment();
+    }
+
+    void outboundFailed() {
+        outboundFailures.increment();
+    }
+
+    synchronized void connecting() {
+        connectStarted = System.nanoTime();
+    }
+
+    synchronized void reconnecting() {
+        reconnectCount++;
+    }
+
+    synchronized void opened() {
+        long now = System.nanoTime();
+        connectLatency = (now - connectStarted) / 1000000L;
+        connectCount++;
+        if (disconnectedSince != 0) {
+            disconnectedTime += now - disconnectedSince;
+            disconnectedSince = 0;
+        }
+    }
+
+    synchronized void disconnected() {
+        if (disconnectedSince == 0) {
+            disconnectedSince = System.nanoTime();
+        }
+    }
+
+    /**
+     * Publishes the metrics over JMX and as an OSGi service.
+     */
+    synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("org.openhab.binding.websocket:type=Connection,url=" + ObjectName.quote(client.getUrl()));
+            server.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Failed to register the metrics of {} over JMX: {}", client.getUrl(), e.getMessage());
+            objectName = null;
+        }
+        BundleContext context = WebsocketClientActivator.getContext();
+        if (context != null) {
+            Dictionary<String, Object> properties = new Hashtable<String, Object>();
+            properties.put(URL_PROPERTY, client.getUrl());
+            registration = context.registerService(WebsocketConnectionMXBean.class.getName(), this, properties);
+        }
+    }
+
+    synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.debug("Failed to unregister the metrics of {} from JMX: {}", client.getUrl(), e.getMessage());
+            }
+            objectName = null;
+        }
+        if (registration != null) {
+            try {
+                registration.unregister();
+            } catch (IllegalStateException e) {
+                // already unregistered when the bundle stopped
+            }
+            registration = null;
+        }
+    }
+
+    public String getUrl() {
+        return client.getUrl();
+    }
+
+    public String getState() {
+        return client.getState().name();
+    }
+
+    public long getFramesIn() {
+        return framesIn.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getFramesOut() {
+        return framesOut.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public synchronized long getConnectLatency() {
+        return connectLatency;
+    }
+
+    public synchronized long getConnectCount() {
+        return connectCount;
+    }
+
+    public synchronized long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    public synchronized long getDisconnectedTime() {
+        long time = disconnectedTime;
+        if (disconnectedSince != 0) {
+            time += System.nanoTime() - disconnectedSince;
+        }
+        return time / 1000000L;
+    }
+
+    public long getOutboundFailures() {
+        return outboundFailures.sum();
+    }
+
+    public int getQueuedMessages() {
+        return client.getQueuedMessageCount();
+    }
+
+    public long getDroppedMessages() {
+        return client.getDroppedMessageCount();
+    }
+
+    public int getItemCount() {
+        return client.getReferenceCount();
+    }
+
+    public long getPingRoundTripTime() {
+        long rtt = pingRoundTripTime;
+        return rtt < 0 ? -1 : rtt / 1000L;
+    }
+
+    public long getHeartbeatTimeouts() {
+        return heartbeatTimeouts.sum();
+    }
+
+    public int getPendingRequests() {
+        return client.getPendingRequestCount();
+    }
+
+    public long getResponses() {
+        long n = 0;
+        for (int i = 0; i < responseTimes.length(); i++) {
+            n += responseTimes.get(i);
+        }
+        return n;
+    }
+
+    public long getRequestTimeouts() {
+        return requestTimeouts.sum();
+    }
+
+    public long[] getResponseTimeBuckets() {
+        return RESPONSE_TIME_BUCKETS.clone();
+    }
+
+    public long[] getResponseTimeHistogram() {
+        long[] histogram = new long[responseTimes.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = responseTimes.get(i);
+        }
+        return histogram;
+    }
+
+    public String getExtensions() {
+        return client.getExtensions();
+    }
+
+    public long getCompressedBytesIn() {
+        return compressedBytesIn.sum();
+    }
+
+    public long getUncompressedBytesIn() {
+        return uncompressedBytesIn.sum();
+    }
+
+    public long getCompressedBytesOut() {
+        return compressedBytesOut.sum();
+    }
+
+    public long getUncompressedBytesOut() {
+        return uncompressedBytesOut.sum();
+    }
+
+    public double getCompressionRatio() {
+        long compressed = compressedBytesIn.sum() + compressedBytesOut.sum();
+        return compressed == 0 ? 0 : (double) (uncompressedBytesIn.sum() + uncompressedBytesOut.sum()) / compressed;
+    }
+
+    public long getCompressionTime() {
+        return compressionTime.sum() / 1000L;
+    }
+
+    /**
+     * Returns the number of bytes of the UTF-8 encoding of the message without encoding it.
+     */
+    private static long utf8Length(String s) {
+        long n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                n += 4;
+                i++;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+}
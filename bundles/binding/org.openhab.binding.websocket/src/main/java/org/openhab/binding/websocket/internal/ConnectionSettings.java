@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.osgi.service.cm.ConfigurationException;
+
+/**
+ * The settings of the connections to a websocket url, configured in openhab.cfg under the
+ * service pid org.openhab.websocket.client of the binding as
+ *
+ * <pre>
+ * org.openhab.websocket.client:&lt;alias&gt;.url=&lt;url&gt;
+ * org.openhab.websocket.client:&lt;alias&gt;.&lt;setting&gt;=&lt;value&gt;
+ * </pre>
+ *
+ * The subscription settings are templates of the text frames sent to the server:
+ *
+ * subscribe - sent whenever the connection is opened, ${keys} is replaced by the keys of
+ *             the inbound items joined by commas and ${quotedKeys} by the keys as JSON strings
+ * subscribeKey - sent when an inbound item is added to an open connection, ${key} and ${quotedKey}
+ *             are replaced by its key. If not set, the subscribe frame is sent again.
+ * unsubscribeKey - sent when an inbound item is removed from an open connection. If not set,
+ *             the subscribe frame is sent again.
+ *
+ * The key of an inbound item is its route value if it has one or otherwise its name.
+ *
+ * The compression settings enable the permessage-deflate extension if the server accepts it:
+ *
+ * deflate - true to offer the extension, false by default
+ * deflateThreshold - the minimum size in bytes of the outbound messages to compress, 128 by default
+ * deflateServerNoContextTakeover - true to ask the server to compress each message separately,
+ *             which saves the memory of the decompression window between messages
+ *
+ * The heartbeat settings detect the dead connections, e.g. half-open behind a NAT:
+ *
+ * heartbeatInterval - the interval in milliseconds between the ping frames, 0 to disable them (default)
+ * heartbeatTimeout - the time in milliseconds to wait for the pong before reconnecting, 10000 by default
+ *
+ * The request settings limit the outbound commands with a correlation key waiting for their replies:
+ *
+ * maxInFlight - the maximum number of requests waiting for their replies, 100 by default, 0 for no limit
+ * requestTimeout - the time in milliseconds to wait for a reply, 10000 by default
+ *
+ * @since 1.6.0
+ */
+class ConnectionSettings {
+    static final ConnectionSettings DEFAULT = new ConnectionSettings();
+
+    private static final List<String> FRAMEWORK_PREFIXES = Arrays.asList("service", "component", "felix");
+
+    private String subscribe;
+    private String subscribeKey;
+    private String unsubscribeKey;
+    private boolean deflate;
+    private int deflateThreshold = 128;
+    private boolean deflateServerNoContextTakeover;
+    private long heartbeatInterval;
+    private long heartbeatTimeout = 10000;
+    private int maxInFlight = 100;
+    private long requestTimeout = 10000;
+
+    /**
+     * Parses the settings of the urls from the binding configuration.
+     *
+     * @return the settings by url
+     * @throws ConfigurationException if a setting is unknown or invalid
+     */
+    static Map<String, ConnectionSettings> parse(Dictionary<String, ?> config) throws ConfigurationException {
+        // collect the settings by alias first, the url may follow its settings
+        Map<String, Map<String, String>> aliases = new HashMap<String, Map<String, String>>();
+        Enumeration<String> keys = config.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            int dot = key.indexOf('.');
+            // skip the global settings and the properties added by the framework such as service.pid
+            if (dot <= 0 || FRAMEWORK_PREFIXES.contains(key.substring(0, dot))) {
+                continue;
+            }
+            Object value = config.get(key);
+            if (!(value instanceof String) || StringUtils.isBlank((String) value)) {
+                continue;
+            }
+            String alias = key.substring(0, dot);
+            Map<String, String> settings = aliases.get(alias);
+            if (settings == null) {
+                settings = new HashMap<String, String>();
+                aliases.put(alias, settings);
+            }
+            settings.put(key.substring(dot + 1), ((String) value).trim());
+        }
+
+        Map<String, ConnectionSettings> result = new HashMap<String, ConnectionSettings>();
+        for (Map.Entry<String, Map<String, String>> entry : aliases.entrySet()) {
+            Map<String, String> settings = entry.getValue();
+            String url = settings.remove("url");
+            if (url == null) {
+                throw new ConfigurationException(entry.getKey() + ".url", "missing the url of the connection settings");
+            }
+            ConnectionSettings cs = new ConnectionSettings();
+            for (Map.Entry<String, String> setting : settings.entrySet()) {
+                cs.set(entry.getKey() + "." + setting.getKey(), setting.getKey(), setting.getValue());
+            }
+            result.put(url, cs);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private void set(String property, String name, String value) throws ConfigurationException {
+        if ("subscribe".equals(name)) {
+            subscribe = value;
+        } else if ("subscribeKey".equals(name)) {
+            subscribeKey = value;
+        } else if ("unsubscribeKey".equals(name)) {
+            unsubscribeKey = value;
+        } else if ("deflate".equals(name)) {
+            deflate = Boolean.parseBoolean(value);
+        } else if ("deflateThreshold".equals(name)) {
+            try {
+                deflateThreshold = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException(property, "invalid deflate threshold '" + value + "'");
+            }
+        } else if ("deflateServerNoContextTakeover".equals(name)) {
+            deflateServerNoContextTakeover = Boolean.parseBoolean(value);
+        } else if ("heartbeatInterval".equals(name)) {
+            heartbeatInterval = parseMillis(property, value);
+        } else if ("heartbeatTimeout".equals(name)) {
+            heartbeatTimeout = parseMillis(property, value);
+        } else if ("maxInFlight".equals(name)) {
+            try {
+                maxInFlight = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException(property, "invalid maximum number of requests '" + value + "'");
+            }
+        } else if ("requestTimeout".equals(name)) {
+            requestTimeout = parseMillis(property, value);
+        } else {
+            throw new ConfigurationException(property, "unknown connection setting '" + name + "'");
+        }
+    }
+
+    private static long parseMillis(String property, String value) throws ConfigurationException {
+        try {
+            long millis = Long.parseLong(value);
+            if (millis >= 0) {
+                return millis;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ConfigurationException(property, "invalid duration in milliseconds '" + value + "'");
+    }
+
+    boolean hasSubscription() {
+        return subscribe != null;
+    }
+
+    /**
+     * Returns the subscribe frame for the given keys or null if no subscription is configured.
+     */
+    String getSubscribe(Collection<String> keys) {
+        if (subscribe == null) {
+            return null;
+        }
+        StringBuilder plain = new StringBuilder();
+        StringBuilder quoted = new StringBuilder();
+        for (Iterator<String> it = keys.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            plain.append(key);
+            quoted.append(quote(key));
+            if (it.hasNext()) {
+                plain.append(',');
+                quoted.append(',');
+            }
+        }
+        return subscribe.replace("${keys}", plain).replace("${quotedKeys}", quoted);
+    }
+
+    /**
+     * Returns the frame subscribing the given key or null if the subscribe frame is to be sent again.
+     */
+    String getSubscribeKey(String key) {
+        return subscribeKey != null ? subscribeKey.replace("${key}", key).replace("${quotedKey}", quote(key)) : null;
+    }
+
+    /**
+     * Returns the frame unsubscribing the given key or null if the subscribe frame is to be sent again.
+     */
+    String getUnsubscribeKey(String key) {
+        return unsubscribeKey != null ? unsubscribeKey.replace("${key}", key).replace("${quotedKey}", quote(key)) : null;
+    }
+
+    boolean isDeflate() {
+        return deflate;
+    }
+
+    int getDeflateThreshold() {
+        return deflateThreshold;
+    }
+
+    boolean isDeflateServerNoContextTakeover() {
+        return deflateServerNoContextTakeover;
+    }
+
+    long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    long getHeartbeatTimeout() {
+        return heartbeatTimeout;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    private static String quote(String key) {
+        return "\"" + key.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionSettings [subscribe=" + subscribe + ", subscribeKey=" + subscribeKey
+            + ", unsubscribeKey=" + unsubscribeKey + ", deflate=" + deflate + ", deflateThreshold=" + deflateThreshold
+            + ", deflateServerNoContextTakeover=" + deflateServerNoContextTakeover
+            + ", heartbeatInterval=" + heartbeatInterval + ", heartbeatTimeout=" + heartbeatTimeout
+            + ", maxInFlight=" + maxInFlight + ", requestTimeout=" + requestTimeout + "]";
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * Opens the inbound connections of the binding at once instead of one by one as the
+ * refresh service gets to them, with at most the configured number of connects in flight.
+ *
+ * The warm-up does not block any thread, each completed connect starts the next one. A connect
+ * not completed within the timeout frees its slot and counts as timed out, the connect itself
+ * goes on and is retried as usual if it fails.
+ *
+ * @since 1.6.0
+ */
+class ConnectionWarmup {
+    private final Queue<WebsocketClient> pending;
+    private final int total;
+    private final int concurrency;
+    private final long timeout;
+    private final Timer timer;
+    private final Listener listener;
+
+    private final AtomicInteger remaining;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger timedOut = new AtomicInteger();
+    private volatile boolean cancelled;
+    private long startedAt;
+    private long duration;
+
+    /**
+     * @param clients the clients to connect
+     * @param concurrency the maximum number of connects in flight
+     * @param timeout the time in milliseconds after which a connect counts as timed out
+     * @param timer the timer of the timeouts
+     * @param listener notified when all the connects are completed
+     */
+    ConnectionWarmup(Collection<WebsocketClient> clients, int concurrency, long timeout, Timer timer, Listener listener) {
+        this.pending = new ConcurrentLinkedQueue<WebsocketClient>(clients);
+        this.total = clients.size();
+        this.remaining = new AtomicInteger(total);
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.timer = timer;
+        this.listener = listener;
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+        if (total == 0) {
+            finish();
+            return;
+        }
+        for (int i = 0; i < concurrency; i++) {
+            next();
+        }
+    }
+
+    /**
+     * Stops starting connects, the listener is not notified anymore.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void next() {
+        if (cancelled) {
+            return;
+        }
+        WebsocketClient wc = pending.poll();
+        if (wc != null) {
+            Attempt attempt = new Attempt();
+            attempt.timeout = timer.newTimeout(attempt, timeout, TimeUnit.MILLISECONDS);
+            wc.connect(attempt);
+        }
+    }
+
+    private void completed() {
+        next();
+        if (remaining.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        duration = (System.nanoTime() - startedAt) / 1000000L;
+        if (!cancelled) {
+            listener.warmupFinished(this);
+        }
+    }
+
+    int getConnectionCount() {
+        return total;
+    }
+
+    int getOpenedCount() {
+        return opened.get();
+    }
+
+    int getFailedCount() {
+        return failed.get();
+    }
+
+    int getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    /**
+     * Returns the time in milliseconds from the start until the last connect completed.
+     */
+    long getDuration() {
+        return duration;
+    }
+
+    interface Listener {
+        void warmupFinished(ConnectionWarmup warmup);
+    }
+
+    /**
+     * A connect completed by its outcome or by its timeout, whichever comes first.
+     */
+    private final class Attempt implements WebsocketClient.ConnectCallback, TimerTask {
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Timeout timeout;
+
+        public void connectCompleted(boolean open) {
+            if (done.compareAndSet(false, true)) {
+                Timeout t = timeout;
+                if (t != null) {
+                    t.cancel();
+                }
+                (open ? opened : failed).incrementAndGet();
+                completed();
+            }
+        }
+
+        public void run(Timeout t) {
+            if (done.compareAndSet(false, true)) {
+                timedOut.incrementAndGet();
+                completed();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+import com.ning.http.client.websocket.WebSocket;
+
+/**
+ * Detects a dead connection by sending a ping frame every interval and expecting the pong
+ * within the timeout, so that a half-open connection is torn down and reconnected instead of
+ * silently receiving nothing. The round-trip time of each ping is recorded in the metrics.
+ *
+ * The pings and their timeouts are scheduled on the timer shared by all the connections. The
+ * http client does not pass the pong frames to its listeners, so a handler intercepting them
+ * is installed into the pipeline of the connection.
+ *
+ * @since 1.6.0
+ */
+class Heartbeat implements TimerTask {
+    private final WebsocketClient client;
+    private final WebSocket ws;
+    private final Timer timer;
+    private final long interval;
+    private final long timeout;
+
+    // the next ping or the timeout of the pending ping, guarded by this
+    private Timeout next;
+    private boolean awaitingPong;
+    private byte[] pingPayload;
+    private long pingSentAt;
+    private long sequence;
+    private boolean stopped;
+
+    /**
+     * @param interval the interval in milliseconds between the pings
+     * @param timeout the time in milliseconds to wait for a pong
+     */
+    Heartbeat(WebsocketClient client, WebSocket ws, Timer timer, long interval, long timeout) {
+        this.client = client;
+        this.ws = ws;
+        this.timer = timer;
+        this.interval = interval;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Installs the pong handler and schedules the first ping.
+     *
+     * @return false if the pong frames cannot be received
+     */
+    boolean start() {
+        Channel channel = WebsocketChannels.getChannel(ws);
+        if (channel == null || channel.getPipeline().get(WebsocketChannels.PROCESSOR) == null) {
+            return false;
+        }
+        channel.getPipeline().addBefore(WebsocketChannels.PROCESSOR, "ws-heartbeat", new PongHandler());
+        synchronized (this) {
+            next = timer.newTimeout(this, interval, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        if (next != null) {
+            next.cancel();
+            next = null;
+        }
+    }
+
+    public void run(Timeout t) {
+        byte[] payload;
+        synchronized (this) {
+            if (stopped || t != next) {
+                return;
+            }
+            if (awaitingPong) {
+                stopped = true;
+                next = null;
+                payload = null;
+            } else {
+                // the payload identifies the ping so that unsolicited pongs are ignored
+                payload = ByteBuffer.allocate(8).putLong(++sequence).array();
+                pingPayload = payload;
+                pingSentAt = System.nanoTime();
+                awaitingPong = true;
+                next = timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (payload == null) {
+            client.heartbeatTimedOut(ws, timeout);
+        } else {
+            ws.sendPing(payload);
+        }
+    }
+
+    void pong(byte[] payload) {
+        long rtt;
+        synchronized (this) {
+            if (stopped || !awaitingPong || !Arrays.equals(payload, pingPayload)) {
+                return;
+            }
+            rtt = System.nanoTime() - pingSentAt;
+            awaitingPong = false;
+            if (next != null) {
+                next.cancel();
+            }
+            next = timer.newTimeout(this, interval, TimeUnit.MILLISECONDS);
+        }
+        client.getMetrics().pong(rtt);
+    }
+
+    /**
+     * Passes the pong frames to the heartbeat, the http client ignores them.
+     */
+    private final class PongHandler extends SimpleChannelUpstreamHandler {
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            if (e.getMessage() instanceof PongWebSocketFrame) {
+                ChannelBuffer data = ((PongWebSocketFrame) e.getMessage()).getBinaryData();
+                byte[] payload = new byte[data.readableBytes()];
+                data.getBytes(data.readerIndex(), payload);
+                pong(payload);
+            } else {
+                ctx.sendUpstream(e);
+            }
+        }
+    }
+}
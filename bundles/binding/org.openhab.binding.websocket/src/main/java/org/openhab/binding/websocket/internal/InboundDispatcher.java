@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches the inbound messages to the items off the io threads. The items are partitioned
+ * over single threaded workers by their name, so the messages of an item are processed in order
+ * while different items and connections are processed in parallel.
+ * 
+ * The dispatcher measures the time the workers spend processing the messages, i.e. transforming 
+ * them and posting the states of the items, so that changes to this path can be quantified. 
+ * 
+ * @since 1.6.0
+ */
+class InboundDispatcher {
+    private static Logger logger = LoggerFactory.getLogger(InboundDispatcher.class); 
+
+    private final ThreadPoolExecutor[] workers;
+    private final AtomicLong rejected = new AtomicLong();
+    // the number of processed messages and the total and the longest time spent processing them in nanoseconds
+    private final StripedCounter processed = new StripedCounter();
+    private final StripedCounter processingTime = new StripedCounter();
+    private final AtomicLong maxProcessingTime = new AtomicLong();
+
+    /**
+     * @param threads the number of workers
+     * @param queueSize the maximum number of pending messages per worker
+     */
+    public InboundDispatcher(int threads, int queueSize) {
+        workers = new ThreadPoolExecutor[threads];
+        WebsocketClientManager.NamedThreadFactory threadFactory = new WebsocketClientManager.NamedThreadFactory("websocket-dispatch");
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(queueSize, threadFactory);
+        }
+    }
+
+    /**
+     * Runs the task on the worker of the specified item.
+     * 
+     * @param itemName
+     * @param task
+     */
+    public void dispatch(String itemName, Runnable task) {
+        try {
+            workers[(itemName.hashCode() & 0x7fffffff) % workers.length].execute(task);
+        } catch (RejectedExecutionException e) {
+            long count = rejected.incrementAndGet();
+            logger.debug("dropped inbound message for item={}, {} messages dropped so far", itemName, count);
+        }
+    }
+
+    /**
+     * Returns the number of messages waiting to be processed by all the workers.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            depth += worker.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the highest number of messages waiting to be processed by a single worker.
+     */
+    public int getMaxQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            depth = Math.max(depth, worker.getQueue().size());
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the number of messages dropped because the worker's queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of messages processed by the workers.
+     */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * Returns the mean time in microseconds spent processing a message.
+     */
+    public long getMeanProcessingTime() {
+        long count = processed.sum();
+        return count > 0 ? processingTime.sum() / count / 1000L : 0;
+    }
+
+    /**
+     * Returns the longest time in microseconds spent processing a message.
+     */
+    public long getMaxProcessingTime() {
+        return maxProcessingTime.get() / 1000L;
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * A single threaded worker timing the tasks it runs. 
+     */
+    private class Worker extends ThreadPoolExecutor {
+        // only accessed by the worker's thread
+        private long started;
+
+        Worker(int queueSize, ThreadFactory threadFactory) {
+            super(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueSize), threadFactory);
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            started = System.nanoTime();
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            long time = System.nanoTime() - started;
+            processed.increment();
+            processingTime.add(time);
+            long max;
+            while (time > (max = maxProcessingTime.get()) && !maxProcessingTime.compareAndSet(max, time)) {
+                // retry until the maximum is updated or exceeded by another worker
+            }
+        }
+    }
+}
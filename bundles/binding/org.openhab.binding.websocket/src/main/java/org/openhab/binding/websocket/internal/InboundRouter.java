@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Passes the inbound text messages of a client only to the items they concern.
+ *
+ * The items without a route key receive every message. The items with a route key are
+ * indexed by their key and route value, so that the key of a message is extracted once
+ * per distinct key and the matching items are found with a single lookup.
+ * A router is immutable and rebuilt whenever the inbound items of the client change.
+ *
+ * @since 1.6.0
+ */
+class InboundRouter {
+    static final InboundRouter EMPTY = new InboundRouter(Collections.<String, WebsocketClientGenericBindingProvider>emptyMap());
+
+    // the items receiving every message
+    private final Map<String, WebsocketClientGenericBindingProvider> unrouted;
+    // the items by route key and route value
+    private final Map<RouteKey, Map<String, Map<String, WebsocketClientGenericBindingProvider>>> routed;
+
+    InboundRouter(Map<String, WebsocketClientGenericBindingProvider> listeners) {
+        Map<String, WebsocketClientGenericBindingProvider> unrouted = new HashMap<String, WebsocketClientGenericBindingProvider>();
+        Map<RouteKey, Map<String, Map<String, WebsocketClientGenericBindingProvider>>> routed =
+            new HashMap<RouteKey, Map<String, Map<String, WebsocketClientGenericBindingProvider>>>();
+        for (Map.Entry<String, WebsocketClientGenericBindingProvider> entry : listeners.entrySet()) {
+            String itemName = entry.getKey();
+            WebsocketClientGenericBindingProvider provider = entry.getValue();
+            RouteKey routeKey = provider.getRouteKey(itemName);
+            if (routeKey == null) {
+                unrouted.put(itemName, provider);
+                continue;
+            }
+            Map<String, Map<String, WebsocketClientGenericBindingProvider>> values = routed.get(routeKey);
+            if (values == null) {
+                values = new HashMap<String, Map<String, WebsocketClientGenericBindingProvider>>();
+                routed.put(routeKey, values);
+            }
+            String routeValue = provider.getRouteValue(itemName);
+            Map<String, WebsocketClientGenericBindingProvider> items = values.get(routeValue);
+            if (items == null) {
+                items = new HashMap<String, WebsocketClientGenericBindingProvider>();
+                values.put(routeValue, items);
+            }
+            items.put(itemName, provider);
+        }
+        this.unrouted = unrouted;
+        this.routed = routed;
+    }
+
+    /**
+     * Returns true if this router passes the messages to the item with the given provider under
+     * the current route key and route value of the item.
+     */
+    boolean isRouted(String itemName, WebsocketClientGenericBindingProvider provider) {
+        RouteKey routeKey = provider.getRouteKey(itemName);
+        if (routeKey == null) {
+            return unrouted.get(itemName) == provider;
+        }
+        Map<String, Map<String, WebsocketClientGenericBindingProvider>> values = routed.get(routeKey);
+        Map<String, WebsocketClientGenericBindingProvider> items = values != null ? values.get(provider.getRouteValue(itemName)) : null;
+        return items != null && items.get(itemName) == provider;
+    }
+
+    /**
+     * Posts the message to the items without a route key and to the items whose route value matches.
+     */
+    void route(String message, WebsocketClientManager manager) {
+        post(unrouted, message, manager);
+        for (Map.Entry<RouteKey, Map<String, Map<String, WebsocketClientGenericBindingProvider>>> entry : routed.entrySet()) {
+            String value = entry.getKey().extract(message);
+            if (value != null) {
+                Map<String, WebsocketClientGenericBindingProvider> items = entry.getValue().get(value);
+                if (items != null) {
+                    post(items, message, manager);
+                }
+            }
+        }
+    }
+
+    private static void post(Map<String, WebsocketClientGenericBindingProvider> items, String message, WebsocketClientManager manager) {
+        for (Map.Entry<String, WebsocketClientGenericBindingProvider> entry : items.entrySet()) {
+            manager.postMessage(entry.getKey(), message, entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * A bounded queue of the outbound messages of a websocket client. The messages are
+ * queued while the connection is not open and drained in order once it is open.
+ * When the queue is full, the overflow policy decides which message is dropped.
+ * The pending requests of the messages which are dropped or replaced are cancelled,
+ * as they will never be answered.
+ * 
+ * @since 1.6.0
+ */
+class OutboundQueue {
+
+    enum OverflowPolicy {
+        // drop the oldest queued message to make room for the new one
+        DROP_OLDEST,
+        // reject the new message
+        DROP_NEWEST,
+        // replace the queued message of the same item when the queue is full, otherwise drop the oldest message
+        LATEST_PER_ITEM;
+
+        static OverflowPolicy parse(String value) {
+            if ("dropOldest".equalsIgnoreCase(value)) {
+                return DROP_OLDEST;
+            } else if ("dropNewest".equalsIgnoreCase(value)) {
+                return DROP_NEWEST;
+            } else if ("latestPerItem".equalsIgnoreCase(value)) {
+                return LATEST_PER_ITEM;
+            }
+            throw new IllegalArgumentException("unknown overflow policy '" + value 
+                                               + "', expected one of dropOldest, dropNewest, latestPerItem");
+        }
+    }
+
+    static class Frame {
+        private final String itemName;
+        private Object payload;
+        // the id of the pending request sent by this frame or null
+        private String requestId;
+
+        Frame(String itemName, Object payload, String requestId) {
+            this.itemName = itemName;
+            this.payload = payload;
+            this.requestId = requestId;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public Object getPayload() {
+            return payload;
+        }
+    }
+
+    private final LinkedList<Frame> frames = new LinkedList<Frame>();
+    // the queued frame of each item, used to replace it with the latest payload
+    private final Map<String, Frame> itemFrames = new HashMap<String, Frame>();
+    private long dropped;
+    private final PendingRequests requests;
+
+    OutboundQueue(PendingRequests requests) {
+        this.requests = requests;
+    }
+
+    /**
+     * Adds the message to the end of this queue unless it is coalesced with or rejected by the overflow policy.
+     * 
+     * @param itemName the item sending the message or null if the message must not be coalesced 
+     * @param payload the message
+     * @param requestId the id of the pending request sent by the message or null
+     * @param capacity the maximum number of queued messages
+     * @param policy the overflow policy
+     * @return false if the message was rejected
+     */
+    public synchronized boolean offer(String itemName, Object payload, String requestId, int capacity, 
+                                      OverflowPolicy policy) {
+        if (frames.size() >= capacity) {
+            dropped++;
+            if (policy == OverflowPolicy.LATEST_PER_ITEM && itemName != null) {
+                Frame frame = itemFrames.get(itemName);
+                if (frame != null) {
+                    cancelRequest(frame);
+                    frame.payload = payload;
+                    frame.requestId = requestId;
+                    return true;
+                }
+            }
+            if (policy == OverflowPolicy.DROP_NEWEST || frames.isEmpty()) {
+                return false;
+            }
+            Frame oldest = frames.removeFirst();
+            unindex(oldest);
+            cancelRequest(oldest);
+        }
+        Frame frame = new Frame(itemName, payload, requestId);
+        frames.addLast(frame);
+        if (itemName != null) {
+            itemFrames.put(itemName, frame);
+        }
+        return true;
+    }
+
+    public synchronized Frame poll() {
+        Frame frame = frames.poll();
+        if (frame != null) {
+            unindex(frame);
+        }
+        return frame;
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    public synchronized int clear() {
+        int size = frames.size();
+        for (Frame frame : frames) {
+            cancelRequest(frame);
+        }
+        frames.clear();
+        itemFrames.clear();
+        return size;
+    }
+
+    /**
+     * Returns the number of messages dropped because this queue was full.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private void cancelRequest(Frame frame) {
+        if (frame.requestId != null) {
+            requests.cancel(frame.requestId);
+        }
+    }
+
+    private void unindex(Frame frame) {
+        if (frame.itemName != null && itemFrames.get(frame.itemName) == frame) {
+            itemFrames.remove(frame.itemName);
+        }
+    }
+}
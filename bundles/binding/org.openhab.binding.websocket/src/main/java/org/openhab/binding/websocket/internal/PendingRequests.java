@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The requests of a client waiting for their replies.
+ *
+ * A request is an outbound text message whose ${correlationId} placeholder is replaced by an id
+ * unique to the connection. The ids start with a random prefix of the connection, so that the ids
+ * carried by the unsolicited messages of the server such as {"id":"1"} are not taken for replies.
+ *
+ * The inbound text messages are matched against the pending requests by extracting the id with
+ * the correlation keys of the requests, so that a reply is passed only to the item which sent the
+ * request. The requests not answered within their timeout are dropped.
+ *
+ * @since 1.6.0
+ */
+class PendingRequests {
+    private static final Logger logger = LoggerFactory.getLogger(PendingRequests.class);
+
+    static final String CORRELATION_ID = "${correlationId}";
+
+    private final ConcurrentMap<String, Request> pending = new ConcurrentHashMap<String, Request>();
+    // the keys extracting the correlation ids of the replies, only added as they are few
+    private final Set<RouteKey> keys = new CopyOnWriteArraySet<RouteKey>();
+    // the ids are the prefix followed by a counter
+    private final String prefix = UUID.randomUUID().toString() + "-";
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConnectionMetrics metrics;
+
+    PendingRequests(ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers a request of the item.
+     *
+     * @param key the key extracting the correlation id of the reply
+     * @param provider the provider of the item
+     * @param maxInFlight the maximum number of pending requests or 0 for no limit
+     * @param timeout the time in milliseconds to wait for the reply
+     * @param timer the timer of the timeouts
+     * @return the correlation id of the request
+     * @throws IOException if the maximum number of requests are pending
+     */
+    String register(String itemName, RouteKey key, WebsocketClientGenericBindingProvider provider, int maxInFlight,
+                    long timeout, Timer timer) throws IOException {
+        for (;;) {
+            int n = inFlight.get();
+            if (maxInFlight > 0 && n >= maxInFlight) {
+                throw new IOException(n + " requests are waiting for their replies");
+            }
+            if (inFlight.compareAndSet(n, n + 1)) {
+                break;
+            }
+        }
+        keys.add(key);
+        Request request = new Request(prefix + nextId.incrementAndGet(), itemName, provider);
+        pending.put(request.id, request);
+        request.timeout = timer.newTimeout(request, timeout, TimeUnit.MILLISECONDS);
+        return request.id;
+    }
+
+    /**
+     * Returns the request answered by the message and records its round-trip time.
+     *
+     * @return the request or null if the message is not a reply to a pending request
+     */
+    Request complete(String message) {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        for (RouteKey key : keys) {
+            String id = key.extract(message);
+            if (id != null) {
+                Request request = remove(id);
+                if (request != null) {
+                    metrics.response(System.nanoTime() - request.sentAt);
+                    return request;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the request which could not be sent.
+     */
+    void cancel(String id) {
+        remove(id);
+    }
+
+    void clear() {
+        for (String id : pending.keySet()) {
+            remove(id);
+        }
+    }
+
+    int size() {
+        return inFlight.get();
+    }
+
+    private Request remove(String id) {
+        Request request = pending.remove(id);
+        if (request != null) {
+            inFlight.decrementAndGet();
+            Timeout t = request.timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+        return request;
+    }
+
+    final class Request implements TimerTask {
+        private final String id;
+        private final String itemName;
+        private final WebsocketClientGenericBindingProvider provider;
+        private final long sentAt = System.nanoTime();
+        private volatile Timeout timeout;
+
+        Request(String id, String itemName, WebsocketClientGenericBindingProvider provider) {
+            this.id = id;
+            this.itemName = itemName;
+            this.provider = provider;
+        }
+
+        String getItemName() {
+            return itemName;
+        }
+
+        WebsocketClientGenericBindingProvider getProvider() {
+            return provider;
+        }
+
+        public void run(Timeout t) {
+            if (pending.remove(id, this)) {
+                inFlight.decrementAndGet();
+                metrics.requestTimedOut();
+                logger.debug("no reply to the request {} of item={}", id, itemName);
+            }
+        }
+    }
+}
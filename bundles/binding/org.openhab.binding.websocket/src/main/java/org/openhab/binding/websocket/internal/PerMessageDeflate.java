@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang.StringUtils;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.websocket.WebSocket;
+
+/**
+ * The permessage-deflate extension (RFC 7692) of a websocket connection.
+ *
+ * The http client neither negotiates extensions nor accepts frames with reserved bits, so the
+ * extension is offered in the upgrade request and, if the server accepts it, installed into
+ * the pipeline of the connection when it opens: the frame decoder is replaced by one allowing
+ * the RSV1 bit, an inflater reassembles and decompresses the compressed inbound messages and
+ * a deflater compresses the outbound messages of at least the configured size.
+ *
+ * The outbound messages are compressed as separate streams terminated by a final block, the
+ * fallback of RFC 7692 section 7.2.3.4 for platforms without a sync flush. Hence the client
+ * never takes over its context and always offers client_no_context_takeover. The server keeps
+ * its context unless server_no_context_takeover is configured, which costs compression on the
+ * server side but saves the window kept by the inflater between messages.
+ *
+ * @since 1.6.0
+ */
+class PerMessageDeflate {
+    private static final Logger logger = LoggerFactory.getLogger(PerMessageDeflate.class);
+
+    static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    static final String EXTENSION = "permessage-deflate";
+
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+
+    private static final int RSV1 = 4;
+    // the tail of a sync flush, removed by the sender and appended by the receiver
+    private static final byte[] TAIL = { 0, 0, (byte) 0xff, (byte) 0xff };
+    // the header of the empty stored block following a final block, remaining after the tail is removed
+    private static final byte[] FINAL_BLOCK_TAIL = { 0 };
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int threshold;
+    private final boolean serverNoContextTakeover;
+    private final int maxMessageSize;
+    private final ConnectionMetrics metrics;
+    private final String extension;
+
+    // guarded by the deflater, which is ended when the connection closes
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private boolean deflaterEnded;
+    // only used by the io thread of the connection
+    private final Inflater inflater = new Inflater(true);
+
+    private PerMessageDeflate(String extension, int threshold, boolean serverNoContextTakeover,
+                              int maxMessageSize, ConnectionMetrics metrics) {
+        this.extension = extension;
+        this.threshold = threshold;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.maxMessageSize = maxMessageSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the extension offered in the upgrade request or null if it is not available.
+     */
+    static String offer(ConnectionSettings settings) {
+        if (!WebsocketChannels.isAvailable()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(EXTENSION).append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+        if (settings.isDeflateServerNoContextTakeover()) {
+            sb.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the extension accepted by the server in the upgrade response.
+     *
+     * @param extensions the extensions header of the response or null
+     * @param offered whether the extension was offered
+     * @return the extension or null if the server declined it
+     * @throws IllegalArgumentException if the server responded with an extension which was not
+     *             offered or with parameters which are not supported
+     */
+    static PerMessageDeflate negotiate(String extensions, boolean offered, ConnectionSettings settings,
+                                       int maxMessageSize, ConnectionMetrics metrics) {
+        if (StringUtils.isBlank(extensions)) {
+            return null;
+        }
+        String[] accepted = extensions.split(",");
+        if (!offered || accepted.length > 1) {
+            throw new IllegalArgumentException("the server accepted extensions which were not offered: " + extensions);
+        }
+        String[] params = accepted[0].split(";");
+        if (!EXTENSION.equalsIgnoreCase(params[0].trim())) {
+            throw new IllegalArgumentException("the server accepted an extension which was not offered: " + extensions);
+        }
+        boolean serverNoContextTakeover = false;
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).trim();
+            if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                serverNoContextTakeover = true;
+            } else if (!CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name) && !SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+                // a smaller server window is decompressed by the inflater as is,
+                // a client window cannot be set and was not offered
+                throw new IllegalArgumentException("unsupported permessage-deflate parameter: " + param);
+            }
+        }
+        return new PerMessageDeflate(accepted[0].trim(), settings.getDeflateThreshold(), serverNoContextTakeover,
+            maxMessageSize, metrics);
+    }
+
+    /**
+     * Installs the extension into the pipeline of the opened websocket.
+     *
+     * @return false if the pipeline cannot be accessed
+     */
+    boolean install(WebSocket ws) {
+        Channel channel = WebsocketChannels.getChannel(ws);
+        if (channel == null) {
+            return false;
+        }
+        ChannelPipeline pipeline = channel.getPipeline();
+        if (pipeline.get(WebsocketChannels.DECODER) == null || pipeline.get(WebsocketChannels.ENCODER) == null) {
+            logger.warn("Failed to install permessage-deflate, unexpected pipeline {}", pipeline.getNames());
+            return false;
+        }
+        // called on the io thread handling the upgrade response, before the first frame is decoded
+        pipeline.replace(WebsocketChannels.DECODER, WebsocketChannels.DECODER, new WebSocket08FrameDecoder(false, true));
+        pipeline.addAfter(WebsocketChannels.DECODER, "ws-inflater", new InflateHandler());
+        pipeline.addAfter(WebsocketChannels.ENCODER, "ws-deflater", new DeflateHandler());
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return extension;
+    }
+
+    /**
+     * Decompresses the inbound messages with the RSV1 bit set.
+     */
+    private final class InflateHandler extends SimpleChannelUpstreamHandler {
+        // the first frame and the decompressed payload of the compressed message being received
+        private WebSocketFrame first;
+        private ChannelBuffer message;
+        private int compressedSize;
+        private long time;
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            if (!(e.getMessage() instanceof WebSocketFrame)) {
+                ctx.sendUpstream(e);
+                return;
+            }
+            WebSocketFrame frame = (WebSocketFrame) e.getMessage();
+            if ((frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame) && (frame.getRsv() & RSV1) != 0) {
+                first = frame;
+                message = ChannelBuffers.dynamicBuffer(Math.max(BUFFER_SIZE, frame.getBinaryData().readableBytes() * 2));
+                compressedSize = 0;
+                time = 0;
+            } else if (first == null || !(frame instanceof ContinuationWebSocketFrame)) {
+                // an uncompressed message or a control frame
+                ctx.sendUpstream(e);
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                ChannelBuffer data = frame.getBinaryData();
+                byte[] input = new byte[data.readableBytes()];
+                data.getBytes(data.readerIndex(), input);
+                compressedSize += input.length;
+                inflate(input);
+                if (frame.isFinalFragment()) {
+                    inflate(TAIL);
+                }
+            } catch (DataFormatException ex) {
+                fail(ctx, 1007, "invalid compressed data: " + ex.getMessage());
+                return;
+            } catch (MessageTooLargeException ex) {
+                fail(ctx, 1009, "decompressed message exceeds " + maxMessageSize + " bytes");
+                return;
+            }
+            time += System.nanoTime() - started;
+            if (!frame.isFinalFragment()) {
+                return;
+            }
+            WebSocketFrame inflated = first instanceof TextWebSocketFrame
+                ? new TextWebSocketFrame(true, 0, message) : new BinaryWebSocketFrame(true, 0, message);
+            metrics.inflated(compressedSize, message.readableBytes(), time);
+            first = null;
+            message = null;
+            if (serverNoContextTakeover || inflater.finished()) {
+                inflater.reset();
+            }
+            Channels.fireMessageReceived(ctx, inflated);
+        }
+
+        private void inflate(byte[] input) throws DataFormatException, MessageTooLargeException {
+            if (inflater.finished()) {
+                // the server ended the stream with a final block, the remaining bytes are padding
+                return;
+            }
+            inflater.setInput(input);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = inflater.inflate(buffer)) > 0) {
+                message.writeBytes(buffer, 0, n);
+                if (maxMessageSize > 0 && message.readableBytes() > maxMessageSize) {
+                    throw new MessageTooLargeException();
+                }
+            }
+        }
+
+        private void fail(ChannelHandlerContext ctx, int status, String reason) {
+            logger.warn("Closing {}: {}", ctx.getChannel().getRemoteAddress(), reason);
+            first = null;
+            message = null;
+            ctx.getChannel().write(new CloseWebSocketFrame(status, reason)).addListener(ChannelFutureListener.CLOSE);
+        }
+
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            inflater.end();
+            synchronized (deflater) {
+                deflaterEnded = true;
+                deflater.end();
+            }
+            super.channelClosed(ctx, e);
+        }
+    }
+
+    /**
+     * Compresses the outbound data messages of at least the threshold size. The messages
+     * written by the sending threads pass this handler one at a time and in write order.
+     */
+    private final class DeflateHandler extends SimpleChannelDownstreamHandler {
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            Object msg = e.getMessage();
+            if (!(msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame)) {
+                ctx.sendDownstream(e);
+                return;
+            }
+            WebSocketFrame frame = (WebSocketFrame) msg;
+            ChannelBuffer data = frame.getBinaryData();
+            int size = data.readableBytes();
+            if (!frame.isFinalFragment() || frame.getRsv() != 0 || size < threshold) {
+                ctx.sendDownstream(e);
+                return;
+            }
+            byte[] input = new byte[size];
+            data.getBytes(data.readerIndex(), input);
+            synchronized (deflater) {
+                long started = System.nanoTime();
+                ChannelBuffer compressed = deflate(input);
+                long time = System.nanoTime() - started;
+                if (compressed == null) {
+                    // the connection is closed
+                    ctx.sendDownstream(e);
+                    return;
+                }
+                if (compressed.readableBytes() >= size) {
+                    // each message is compressed separately, so it can be sent as is instead
+                    metrics.deflated(size, size, time);
+                    ctx.sendDownstream(e);
+                    return;
+                }
+                metrics.deflated(size, compressed.readableBytes(), time);
+                WebSocketFrame deflated = frame instanceof TextWebSocketFrame
+                    ? new TextWebSocketFrame(true, RSV1, compressed) : new BinaryWebSocketFrame(true, RSV1, compressed);
+                Channels.write(ctx, e.getFuture(), deflated, e.getRemoteAddress());
+            }
+        }
+
+        /**
+         * Compresses the message as a stream ending with a final block, followed by the
+         * remainder of the empty stored block of RFC 7692 section 7.2.3.4.
+         *
+         * @return the compressed message or null if the connection is closed
+         */
+        private ChannelBuffer deflate(byte[] input) {
+            if (deflaterEnded) {
+                return null;
+            }
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            ChannelBuffer out = ChannelBuffers.dynamicBuffer(input.length / 2 + 16);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.writeBytes(buffer, 0, n);
+            }
+            out.writeBytes(FINAL_BLOCK_TAIL);
+            return out;
+        }
+    }
+
+    private static final class MessageTooLargeException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
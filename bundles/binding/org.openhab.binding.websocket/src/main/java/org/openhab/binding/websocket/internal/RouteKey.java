@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the routing key of an inbound text message so that the message is only passed
+ * to the items bound to the extracted value.
+ *
+ * A key starting with / is a JSON pointer (RFC 6901) to a member of a JSON message, e.g.
+ * /device/id. Any other key is a regular expression whose first group is the routing key,
+ * e.g. "id":"(\w+)". Keys with the same definition are equal so that the routing key of a
+ * message is extracted only once for all the items using it.
+ *
+ * @since 1.6.0
+ */
+abstract class RouteKey {
+    private final String key;
+
+    private RouteKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Creates the routing key of the given definition.
+     *
+     * @throws IllegalArgumentException if the key is not a valid JSON pointer or regular expression
+     */
+    public static RouteKey valueOf(String key) {
+        if (key == null || key.length() == 0) {
+            throw new IllegalArgumentException("empty route key");
+        }
+        if (key.charAt(0) == '/') {
+            return new JsonPointerKey(key);
+        }
+        return new RegexKey(key);
+    }
+
+    /**
+     * Returns the routing key of the given message or null if the message doesn't contain it.
+     */
+    public abstract String extract(String message);
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof RouteKey && key.equals(((RouteKey) obj).key);
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    private static final class RegexKey extends RouteKey {
+        private final Pattern pattern;
+
+        RegexKey(String key) {
+            super(key);
+            pattern = Pattern.compile(key);
+            if (pattern.matcher("").groupCount() < 1) {
+                throw new IllegalArgumentException("route key '" + key + "' doesn't contain a group");
+            }
+        }
+
+        @Override
+        public String extract(String message) {
+            Matcher matcher = pattern.matcher(message);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+    }
+
+    /**
+     * Walks the message only as far as needed to reach the value of the pointer,
+     * skipping the other members without building a document.
+     */
+    private static final class JsonPointerKey extends RouteKey {
+        private final String[] tokens;
+
+        JsonPointerKey(String key) {
+            super(key);
+            String[] parts = key.substring(1).split("/", -1);
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = parts[i].replace("~1", "/").replace("~0", "~");
+            }
+            tokens = parts;
+        }
+
+        @Override
+        public String extract(String message) {
+            try {
+                int pos = skipWhitespace(message, 0);
+                for (String token : tokens) {
+                    pos = member(message, pos, token);
+                    if (pos < 0) {
+                        return null;
+                    }
+                }
+                if (message.charAt(pos) == '"') {
+                    return unescape(message, pos + 1, skipString(message, pos) - 1);
+                }
+                return message.substring(pos, skipValue(message, pos)).trim();
+            } catch (RuntimeException e) {
+                // a truncated or malformed message
+                return null;
+            }
+        }
+
+        /**
+         * Returns the start of the value of the given member of the object or array at pos, or -1.
+         */
+        private static int member(String s, int pos, String token) {
+            char c = s.charAt(pos);
+            if (c == '{') {
+                pos = skipWhitespace(s, pos + 1);
+                if (s.charAt(pos) == '}') {
+                    return -1;
+                }
+                while (true) {
+                    if (s.charAt(pos) != '"') {
+                        return -1;
+                    }
+                    int end = skipString(s, pos);
+                    boolean matches = unescape(s, pos + 1, end - 1).equals(token);
+                    pos = skipWhitespace(s, end);
+                    if (s.charAt(pos) != ':') {
+                        return -1;
+                    }
+                    pos = skipWhitespace(s, pos + 1);
+                    if (matches) {
+                        return pos;
+                    }
+                    pos = skipWhitespace(s, skipValue(s, pos));
+                    if (s.charAt(pos) != ',') {
+                        return -1;
+                    }
+                    pos = skipWhitespace(s, pos + 1);
+                }
+            } else if (c == '[') {
+                int index;
+                try {
+                    index = Integer.parseInt(token);
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+                pos = skipWhitespace(s, pos + 1);
+                if (s.charAt(pos) == ']') {
+                    return -1;
+                }
+                for (int i = 0; ; i++) {
+                    if (i == index) {
+                        return pos;
+                    }
+                    pos = skipWhitespace(s, skipValue(s, pos));
+                    if (s.charAt(pos) != ',') {
+                        return -1;
+                    }
+                    pos = skipWhitespace(s, pos + 1);
+                }
+            }
+            return -1;
+        }
+
+        private static int skipWhitespace(String s, int pos) {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+        /**
+         * Returns the position after the string starting with the quote at pos.
+         */
+        private static int skipString(String s, int pos) {
+            pos++;
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return pos;
+                } else if (c == '\\') {
+                    pos++;
+                }
+            }
+        }
+
+        /**
+         * Returns the position after the value starting at pos.
+         */
+        private static int skipValue(String s, int pos) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                return skipString(s, pos);
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                while (true) {
+                    c = s.charAt(pos);
+                    if (c == '"') {
+                        pos = skipString(s, pos);
+                        continue;
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        if (--depth == 0) {
+                            return pos + 1;
+                        }
+                    }
+                    pos++;
+                }
+            }
+            while (pos < s.length() && ",}] \t\r\n".indexOf(s.charAt(pos)) < 0) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private static String unescape(String s, int start, int end) {
+            int escape = s.indexOf('\\', start);
+            if (escape < 0 || escape >= end) {
+                return s.substring(start, end);
+            }
+            StringBuilder sb = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                c = s.charAt(++i);
+                switch (c) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
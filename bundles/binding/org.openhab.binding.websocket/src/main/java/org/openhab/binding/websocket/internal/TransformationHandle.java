@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.openhab.core.transform.TransformationHelper;
+import org.openhab.core.transform.TransformationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A transformation rule parsed once when the binding configuration is read. The transformation
+ * service is looked up on the first use and kept until the transformation services change.
+ * 
+ * @since 1.6.0
+ */
+class TransformationHandle {
+    private static final Logger logger = LoggerFactory.getLogger(TransformationHandle.class);
+
+    /** RegEx to extract a parse a function String <code>'(.*?)\((.*)\)'</code> */
+    private static final Pattern EXTRACT_FUNCTION_PATTERN = Pattern.compile("(.*?)\\((.*)\\)");
+
+    // incremented whenever a transformation service is registered, modified or unregistered
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private final String transformation;
+    private final String type;
+    private final String function;
+    // the resolved service together with the generation it was resolved in
+    private final AtomicReference<ResolvedService> resolved = new AtomicReference<ResolvedService>();
+
+    private TransformationHandle(String transformation, String type, String function) {
+        this.transformation = transformation;
+        this.type = type;
+        this.function = function;
+    }
+
+    /**
+     * Parses the transformation rule.
+     * 
+     * @param transformation the rule in the form <function>(<pattern>) or a blank string for no transformation
+     * @return the handle
+     * @throws IllegalArgumentException if the rule does not follow the expected pattern
+     */
+    public static TransformationHandle valueOf(String transformation) {
+        if (StringUtils.isBlank(transformation)) {
+            return new TransformationHandle(transformation, null, null);
+        }
+        Matcher matcher = EXTRACT_FUNCTION_PATTERN.matcher(transformation);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("given transformation function '" + transformation + "' does not follow the expected pattern '<function>(<pattern>)'");
+        }
+        return new TransformationHandle(transformation, matcher.group(1), matcher.group(2));
+    }
+
+    /**
+     * Invalidates the transformation services resolved by all the handles.
+     */
+    static void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    public String getTransformation() {
+        return transformation;
+    }
+
+    public boolean isIdentity() {
+        return type == null;
+    }
+
+    /**
+     * Transforms the message. If the transformation service is unavailable or fails, 
+     * the message is returned without any transformation.
+     * 
+     * @param message
+     * @return the transformed message
+     */
+    public String transform(String message) {
+        if (type == null) {
+            return message;
+        }
+        logger.debug("transforming message {} using transform {}", message, transformation);
+        String transformedMessage;
+        try {
+            TransformationService transformationService = getService();
+            if (transformationService != null) {
+                transformedMessage = transformationService.transform(function, message);
+            } else {
+                transformedMessage = message;
+                logger.warn("couldn't transform message because transformationService of type '{}' is unavailable", type);
+            }
+        }
+        catch (Exception te) {
+            logger.error("transformation throws exception [transformation="
+                         + transformation + ", message=" + message + "]", te);
+
+            // in case of an error we return the message without any transformation
+            transformedMessage = message;
+        }
+        logger.debug("transformed message is '{}'", transformedMessage);
+        return transformedMessage;
+    }
+
+    private TransformationService getService() {
+        int current = generation.get();
+        ResolvedService r = resolved.get();
+        if (r == null || r.generation != current) {
+            ResolvedService update = new ResolvedService(
+                TransformationHelper.getTransformationService(WebsocketClientActivator.getContext(), type), current);
+            // a service resolved concurrently in a later generation is kept
+            while (!resolved.compareAndSet(r, update)) {
+                r = resolved.get();
+                if (r != null && r.generation - current >= 0) {
+                    return r.service;
+                }
+            }
+            r = update;
+        }
+        return r.service;
+    }
+
+    @Override
+    public String toString() {
+        return transformation;
+    }
+
+    private static class ResolvedService {
+        final TransformationService service;
+        final int generation;
+
+        ResolvedService(TransformationService service, int generation) {
+            this.service = service;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import java.lang.reflect.Field;
+
+import org.jboss.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.providers.netty.NettyWebSocket;
+import com.ning.http.client.websocket.WebSocket;
+
+/**
+ * Gives access to the netty channel of a websocket, which the http client does not expose,
+ * to install the handlers of the frames the http client does not support.
+ *
+ * @since 1.6.0
+ */
+final class WebsocketChannels {
+    private static final Logger logger = LoggerFactory.getLogger(WebsocketChannels.class);
+
+    // the names of the handlers installed by the http client when the connection is upgraded
+    static final String DECODER = "ws-decoder";
+    static final String ENCODER = "ws-encoder";
+    static final String PROCESSOR = "wsProcessor";
+
+    private static final Field CHANNEL_FIELD = getChannelField();
+
+    private WebsocketChannels() {
+    }
+
+    private static Field getChannelField() {
+        try {
+            Field field = NettyWebSocket.class.getDeclaredField("channel");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            logger.warn("The channels of the websockets are not accessible with this http client: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the channels of the websockets are accessible.
+     */
+    static boolean isAvailable() {
+        return CHANNEL_FIELD != null;
+    }
+
+    /**
+     * Returns the channel of the websocket or null if it is not accessible.
+     */
+    static Channel getChannel(WebSocket ws) {
+        if (CHANNEL_FIELD == null || !(ws instanceof NettyWebSocket)) {
+            return null;
+        }
+        try {
+            return (Channel) CHANNEL_FIELD.get(ws);
+        } catch (Exception e) {
+            logger.warn("Failed to access the channel of {}: {}", ws, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,16 +1,30 @@
 package org.openhab.binding.websocket.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.util.Timeout;
 
-import org.openhab.binding.websocket.WebsocketClientBindingProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.providers.netty.NettyWebSocket;
 import com.ning.http.client.websocket.WebSocket;
 import com.ning.http.client.websocket.WebSocketByteListener;
 import com.ning.http.client.websocket.WebSocketTextListener;
@@ -21,20 +35,52 @@ import com.ning.http.client.websocket.WebSocketUpgradeHandler;
  */
 class WebsocketClient {
     private static Logger logger = LoggerFactory.getLogger(WebsocketClient.class); 
+
+    enum ConnectionState { CLOSED, CONNECTING, OPEN }
+
+    // runs the connect completion callback on the io thread completing the connect future
+    private static final Executor SAME_THREAD_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
     private WebsocketClientManager manager;
-    private AsyncHttpClient client;
-    private WebSocket websocket;
+    private volatile WebSocket websocket;
+    private final AtomicReference<ConnectionState> state = new AtomicReference<ConnectionState>(ConnectionState.CLOSED);
+    // set when this client is closed by the manager so that a pending connect is discarded
+    private final AtomicBoolean released = new AtomicBoolean();
+    // the pending reconnect and the number of failed attempts since the connection was last open
+    private Timeout reconnectTimeout;
+    private int reconnectAttempts;
     // the websocket url of this client
     private String url;
-    // a map to store all inbound items connected to this client : itemName -> bindingProvider*
-    private Map<String, WebsocketClientBindingProvider> listeners = 
-        Collections.synchronizedMap(new HashMap<String, WebsocketClientBindingProvider>());
-    // the reference count of inbound and outbound items associated with this client
-    private int count;
+    // a map to store all inbound items connected to this client : itemName -> bindingProvider*,
+    // replaced by a modified copy on each change so that the io thread can read it without locking
+    private volatile Map<String, WebsocketClientGenericBindingProvider> listeners = Collections.emptyMap();
+    private final Object listenersLock = new Object();
+    // the counters and gauges of this connection
+    private final ConnectionMetrics metrics = new ConnectionMetrics(this);
+    // the requests waiting for their replies
+    private final PendingRequests requests = new PendingRequests(metrics);
+    // the outbound messages waiting to be written and the flag of the thread draining them,
+    // the queue cancels the requests of the messages it drops
+    private final OutboundQueue outbound = new OutboundQueue(requests);
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // the router of the inbound text messages, rebuilt together with the listeners
+    private volatile InboundRouter router = InboundRouter.EMPTY;
+    // the permessage-deflate extension negotiated by the current connect or the reason it failed
+    private volatile PerMessageDeflate deflate;
+    private volatile String negotiationError;
+    // the callbacks waiting for the pending connect to complete, guarded by themselves
+    private final List<ConnectCallback> connectCallbacks = new ArrayList<ConnectCallback>();
+    // the heartbeat of the open connection or null
+    private volatile Heartbeat heartbeat;
+    // the number of inbound and outbound items associated with this client or -1 once it is disposed
+    private final AtomicInteger count = new AtomicInteger();
         
-    public WebsocketClient(String url, AsyncHttpClientConfig config, WebsocketClientManager manager) {
+    public WebsocketClient(String url, WebsocketClientManager manager) {
         this.url = url;
-        this.client = config == null ? new AsyncHttpClient() : new AsyncHttpClient(config);
         this.manager = manager;
     }
     
@@ -46,103 +92,621 @@ class WebsocketClient {
         this.url = url;
     }
 
+    /**
+     * Starts connecting this client unless it is already open or connecting. This method
+     * does not wait for the handshake, the state changes to OPEN when the connection is established.
+     * 
+     * @throws IOException if the connect request could not be issued
+     */
     public void connect() throws IOException {
+        if (released.get() || !state.compareAndSet(ConnectionState.CLOSED, ConnectionState.CONNECTING)) {
+            return;
+        }
         logger.debug("connecting to {}", url);
+        metrics.connecting();
+        deflate = null;
+        negotiationError = null;
         try {
-            websocket = client.prepareGet(url).execute(
-                new WebSocketUpgradeHandler.Builder().addWebSocketListener(new ClientListener()).build()).get();
-            logger.debug("connected");
+            ConnectionSettings settings = manager.getConnectionSettings(url);
+            AsyncHttpClient.BoundRequestBuilder request = manager.getAsyncHttpClient().prepareGet(url);
+            String offer = settings.isDeflate() ? PerMessageDeflate.offer(settings) : null;
+            if (offer != null) {
+                request.addHeader(PerMessageDeflate.EXTENSIONS_HEADER, offer);
+            }
+            final ListenableFuture<WebSocket> future = request.execute(new UpgradeHandler(
+                new WebSocketUpgradeHandler.Builder().addWebSocketListener(new ClientListener()), settings, offer != null));
+            future.addListener(new Runnable() {
+                public void run() {
+                    try {
+                        // the future is already done here
+                        future.get();
+                    } catch (ExecutionException e) {
+                        connectFailed(e.getCause());
+                    } catch (Exception e) {
+                        connectFailed(e);
+                    }
+                }
+            }, SAME_THREAD_EXECUTOR);
         } catch (Exception e) {
-            logger.error("Failed to connect", url);
+            connectFailed(e);
             throw e instanceof IOException ? (IOException)e : new IOException(e);
         }
     }
 
+    /**
+     * Starts connecting this client unless it is already open or connecting and notifies the callback
+     * when the connection is open or the connect failed. The callback of a closed client is notified
+     * of a failed connect.
+     */
+    void connect(ConnectCallback callback) {
+        boolean open = false;
+        synchronized (connectCallbacks) {
+            // checked under the lock, as close() completes the callbacks added until it was released
+            if (!released.get()) {
+                open = state.get() == ConnectionState.OPEN;
+                if (!open) {
+                    connectCallbacks.add(callback);
+                    callback = null;
+                }
+            }
+        }
+        if (callback != null) {
+            callback.connectCompleted(open);
+            return;
+        }
+        try {
+            connect();
+        } catch (IOException e) {
+            // the callback is already notified
+        }
+    }
+
+    private void connectCompleted(boolean open) {
+        List<ConnectCallback> callbacks;
+        synchronized (connectCallbacks) {
+            if (connectCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<ConnectCallback>(connectCallbacks);
+            connectCallbacks.clear();
+        }
+        for (ConnectCallback callback : callbacks) {
+            callback.connectCompleted(open);
+        }
+    }
+
+    private void connectFailed(Throwable t) {
+        if (state.compareAndSet(ConnectionState.CONNECTING, ConnectionState.CLOSED)) {
+            connectCompleted(false);
+            logger.error("Failed to connect to {}: {}", url, t);
+            scheduleReconnect();
+            if (!isReconnectScheduled()) {
+                // keep the queued messages only if they are going to be sent on the next attempt
+                int dropped = outbound.clear();
+                if (dropped > 0) {
+                    logger.warn("Dropped {} messages queued for {}", dropped, url);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules a reconnect with an increasing delay if this client has inbound items 
+     * to keep receiving data for. Outbound only clients reconnect on their next message.
+     */
+    private synchronized void scheduleReconnect() {
+        if (released.get() || listeners.isEmpty() || reconnectTimeout != null) {
+            return;
+        }
+        reconnectTimeout = manager.scheduleReconnect(this, reconnectAttempts++);
+    }
+
+    synchronized boolean isReconnectScheduled() {
+        return reconnectTimeout != null;
+    }
+
+    void reconnect() {
+        synchronized (this) {
+            reconnectTimeout = null;
+        }
+        metrics.reconnecting();
+        try {
+            connect();
+        } catch (IOException e) {
+            // the failure is already handled and the next attempt scheduled
+        }
+    }
+
+    private void opened(WebSocket ws) {
+        if (released.get()) {
+            ws.close();
+            return;
+        }
+        int maxMessageSize = manager.getMaxMessageSize();
+        if (maxMessageSize > 0 && ws instanceof NettyWebSocket) {
+            // the websocket reassembles the fragmented messages and closes the connection if they exceed this size
+            ((NettyWebSocket)ws).setMaxBufferSize(maxMessageSize);
+        }
+        if (negotiationError != null) {
+            logger.error("Failed to negotiate the extensions of {}: {}", url, negotiationError);
+            ws.close();
+            return;
+        }
+        PerMessageDeflate d = deflate;
+        if (d != null && !d.install(ws)) {
+            ws.close();
+            return;
+        }
+        websocket = ws;
+        startHeartbeat(ws);
+        synchronized (listenersLock) {
+            // the subscription goes ahead of the queued messages and covers the items registered until now,
+            // the items registered afterwards are subscribed incrementally as the connection is open
+            String subscribe = manager.getConnectionSettings(url).getSubscribe(getSubscriptionKeys(listeners));
+            if (subscribe != null) {
+                logger.debug("subscribing to {}: {}", url, subscribe);
+                ws.sendTextMessage(subscribe);
+                metrics.frameOut(subscribe);
+            }
+            synchronized (connectCallbacks) {
+                state.set(ConnectionState.OPEN);
+            }
+        }
+        connectCompleted(true);
+        metrics.opened();
+        synchronized (this) {
+            reconnectAttempts = 0;
+        }
+        logger.debug("connected to {}", url);
+        drain();
+    }
+
+    private void startHeartbeat(WebSocket ws) {
+        ConnectionSettings settings = manager.getConnectionSettings(url);
+        if (settings.getHeartbeatInterval() <= 0) {
+            return;
+        }
+        Heartbeat hb = new Heartbeat(this, ws, manager.getTimer(), settings.getHeartbeatInterval(), settings.getHeartbeatTimeout());
+        if (hb.start()) {
+            heartbeat = hb;
+        } else {
+            logger.warn("The pongs of {} cannot be received, the heartbeat is disabled", url);
+        }
+    }
+
+    private void stopHeartbeat() {
+        Heartbeat hb = heartbeat;
+        if (hb != null) {
+            hb.stop();
+            heartbeat = null;
+        }
+    }
+
+    /**
+     * Tears down the connection whose heartbeat was not answered in time, it is reconnected
+     * as any dropped connection.
+     */
+    void heartbeatTimedOut(WebSocket ws, long timeout) {
+        metrics.heartbeatTimedOut();
+        if (websocket != ws) {
+            return;
+        }
+        logger.warn("No pong received from {} within {} ms, closing the connection", url, timeout);
+        ws.close();
+        // the close frame may never leave a dead connection
+        Channel channel = WebsocketChannels.getChannel(ws);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void closed() {
+        // cleared before CLOSED is published, as a connect may start and open a new websocket right after
+        stopHeartbeat();
+        websocket = null;
+        state.set(ConnectionState.CLOSED);
+        // a connection closed while opening, e.g. as its extensions could not be negotiated
+        connectCompleted(false);
+        metrics.disconnected();
+        scheduleReconnect();
+    }
+
     public void close() {
-        if (isConnected()) {
-            websocket.close();
+        if (!released.compareAndSet(false, true)) {
+            return;
         }
-        if (!client.isClosed()) {
-            client.close();
+        stopHeartbeat();
+        requests.clear();
+        connectCompleted(false);
+        metrics.unregister();
+        synchronized (this) {
+            if (reconnectTimeout != null) {
+                reconnectTimeout.cancel();
+                reconnectTimeout = null;
+            }
+        }
+        // the underlying http client is shared and closed by the manager
+        WebSocket ws = websocket;
+        if (ws != null && ws.isOpen()) {
+            ws.close();
         }
     }
     
     public boolean isConnected() {
-        return websocket != null && websocket.isOpen();
+        WebSocket ws = websocket;
+        return state.get() == ConnectionState.OPEN && ws != null && ws.isOpen();
+    }
+
+    public ConnectionState getState() {
+        return state.get();
     }
     
-    public void register(String itemName, WebsocketClientBindingProvider provider) {
+    public void register(String itemName, WebsocketClientGenericBindingProvider provider) {
         if (provider != null) {
-            listeners.put(itemName, provider);
+            synchronized (listenersLock) {
+                if (router.isRouted(itemName, provider)) {
+                    // registered with the same route, e.g. the item was reloaded with an unchanged binding,
+                    // the listeners, the router and the subscription keys are kept as they are
+                    return;
+                }
+                Map<String, WebsocketClientGenericBindingProvider> previous = listeners;
+                Map<String, WebsocketClientGenericBindingProvider> copy = new HashMap<String, WebsocketClientGenericBindingProvider>(previous);
+                copy.put(itemName, provider);
+                listeners = Collections.unmodifiableMap(copy);
+                router = new InboundRouter(copy);
+                updateSubscription(previous, copy, getSubscriptionKey(itemName, provider), true);
+            }
         }
-        count++;
     }
 
     public void unregister(String itemName) {
-        count--;
-        listeners.remove(itemName);
+        synchronized (listenersLock) {
+            Map<String, WebsocketClientGenericBindingProvider> previous = listeners;
+            if (previous.containsKey(itemName)) {
+                Map<String, WebsocketClientGenericBindingProvider> copy = new HashMap<String, WebsocketClientGenericBindingProvider>(previous);
+                copy.remove(itemName);
+                listeners = Collections.unmodifiableMap(copy);
+                router = new InboundRouter(copy);
+                updateSubscription(previous, copy, getSubscriptionKey(itemName, previous.get(itemName)), false);
+            }
+        }
+    }
+
+    /**
+     * Sends the subscription change of the added or removed key if the connection is open and
+     * the key is not shared by another inbound item. Called while holding the listenersLock.
+     */
+    private void updateSubscription(Map<String, WebsocketClientGenericBindingProvider> previous, 
+                                    Map<String, WebsocketClientGenericBindingProvider> current, String key, boolean added) {
+        ConnectionSettings settings = manager.getConnectionSettings(url);
+        if (!settings.hasSubscription() || state.get() != ConnectionState.OPEN) {
+            // subscribed with all the keys when the connection opens
+            return;
+        }
+        Set<String> currentKeys = getSubscriptionKeys(current);
+        if (getSubscriptionKeys(previous).contains(key) == currentKeys.contains(key)) {
+            return;
+        }
+        String message = added ? settings.getSubscribeKey(key) : settings.getUnsubscribeKey(key);
+        if (message == null) {
+            message = settings.getSubscribe(currentKeys);
+        }
+        try {
+            logger.debug("updating the subscription to {}: {}", url, message);
+            send(null, message);
+        } catch (IOException e) {
+            logger.warn("Failed to update the subscription to {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the distinct subscription keys of the given inbound items.
+     */
+    private static Set<String> getSubscriptionKeys(Map<String, WebsocketClientGenericBindingProvider> listeners) {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (Map.Entry<String, WebsocketClientGenericBindingProvider> entry : listeners.entrySet()) {
+            keys.add(getSubscriptionKey(entry.getKey(), entry.getValue()));
+        }
+        return keys;
+    }
+
+    private static String getSubscriptionKey(String itemName, WebsocketClientGenericBindingProvider provider) {
+        String routeValue = provider.getRouteValue(itemName);
+        return routeValue != null ? routeValue : itemName;
     }
     
+    /**
+     * Returns the snapshot of the inbound items of this client, which is not modified afterwards.
+     */
+    Map<String, WebsocketClientGenericBindingProvider> getListeners() {
+        return listeners;
+    }
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Returns the extensions negotiated by the last connect or an empty string.
+     */
+    String getExtensions() {
+        PerMessageDeflate d = deflate;
+        return d != null ? d.toString() : "";
+    }
+
+    /**
+     * Increments the reference count unless this client is disposed.
+     * 
+     * @return false if this client is disposed and is not to be used anymore
+     */
+    boolean retain() {
+        for (;;) {
+            int c = count.get();
+            if (c < 0) {
+                return false;
+            }
+            if (count.compareAndSet(c, c + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Decrements the reference count.
+     * 
+     * @return true for the last reference, after which this client is to be disposed
+     */
+    boolean release() {
+        for (;;) {
+            int c = count.get();
+            if (c <= 0) {
+                throw new IllegalStateException("websocket " + url + " is not retained");
+            }
+            if (count.compareAndSet(c, c - 1)) {
+                return c == 1;
+            }
+        }
+    }
+
+    /**
+     * Marks this client as disposed if it is not retained, so that it cannot be retained again.
+     * 
+     * @return true if this client is disposed and is to be closed by the caller
+     */
+    boolean dispose() {
+        return count.compareAndSet(0, -1);
+    }
+
     public int getReferenceCount() {
-        return count;
+        return Math.max(count.get(), 0);
+    }
+
+    /**
+     * Returns true once this client is closed by the manager.
+     */
+    boolean isReleased() {
+        return released.get();
     }
     
     public void ensureConnected() throws IOException {
-        if (!isConnected()) {
-                connect();
+        if (state.get() == ConnectionState.CLOSED) {
+            connect();
         }
     }
     
-    public void sendTextMessage(String message) {
-        logger.debug("sendTextMessage({})", message);
-        websocket.sendTextMessage(message);
+    /**
+     * Sends the message without associating it with an item.
+     * 
+     * @param message
+     * @throws IOException if the message cannot be sent or queued
+     */
+    public void sendTextMessage(String message) throws IOException {
+        send(null, message);
+    }
+
+    public void sendMessage(byte[] message) throws IOException {
+        send(null, message);
+    }
+
+    /**
+     * Sends the request of the item with its ${correlationId} placeholder replaced by the id of
+     * the request, the reply is passed only to the item. A message without the placeholder could
+     * never be answered and is sent as a plain message.
+     *
+     * @param itemName the item sending the request
+     * @param message the request
+     * @param correlationKey the key extracting the correlation id of the reply
+     * @param provider the provider of the item
+     * @throws IOException if the request cannot be sent or queued or too many requests are pending
+     */
+    public void sendRequest(String itemName, String message, RouteKey correlationKey,
+                            WebsocketClientGenericBindingProvider provider) throws IOException {
+        if (message.indexOf(PendingRequests.CORRELATION_ID) < 0) {
+            logger.warn("The message of item={} to {} has no {} placeholder, sending it without waiting for a reply",
+                        new Object[] { itemName, url, PendingRequests.CORRELATION_ID });
+            send(itemName, message);
+            return;
+        }
+        ConnectionSettings settings = manager.getConnectionSettings(url);
+        String id;
+        try {
+            id = requests.register(itemName, correlationKey, provider, settings.getMaxInFlight(),
+                                   settings.getRequestTimeout(), manager.getTimer());
+        } catch (IOException e) {
+            metrics.outboundFailed();
+            throw new IOException("websocket " + url + ": " + e.getMessage());
+        }
+        try {
+            send(itemName, message.replace(PendingRequests.CORRELATION_ID, id), id);
+        } catch (IOException e) {
+            requests.cancel(id);
+            throw e;
+        }
+    }
+
+    public int getPendingRequestCount() {
+        return requests.size();
+    }
+
+    /**
+     * Queues the message of the specified item and writes the queued messages if the connection
+     * is open. Otherwise, the messages are written when the connection is established, unless the 
+     * manager is configured to reject them. If the queue is full, the manager's overflow policy 
+     * decides which message is dropped.
+     * 
+     * @param itemName the item sending the message, used to coalesce its queued messages
+     * @param message the text or binary message
+     * @throws IOException if the message cannot be sent or queued
+     */
+    public void send(String itemName, Object message) throws IOException {
+        send(itemName, message, null);
+    }
+
+    private void send(String itemName, Object message, String requestId) throws IOException {
+        logger.debug("send({}, {})", itemName, message);
+        if (state.get() != ConnectionState.OPEN && !manager.isQueueWhileConnecting()) {
+            metrics.outboundFailed();
+            throw new IOException("websocket " + url + " is not connected");
+        }
+        if (!outbound.offer(itemName, message, requestId, manager.getOutboundQueueSize(), manager.getOutboundOverflowPolicy())) {
+            metrics.outboundFailed();
+            throw new IOException("the outbound queue of websocket " + url + " is full");
+        }
+        drain();
+    }
+
+    /**
+     * Writes the queued messages while the connection is open. Only one thread drains the queue 
+     * at a time, either a sending thread or the io thread opening the connection. The writes do not 
+     * block, they are handed over to the connection's io thread.
+     */
+    private void drain() {
+        while (state.get() == ConnectionState.OPEN && !outbound.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                WebSocket ws = websocket;
+                OutboundQueue.Frame frame;
+                while (ws != null && state.get() == ConnectionState.OPEN && (frame = outbound.poll()) != null) {
+                    write(ws, frame.getPayload());
+                }
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void write(WebSocket ws, Object payload) {
+        if (payload instanceof byte[]) {
+            ws.sendMessage((byte[])payload);
+        } else {
+            ws.sendTextMessage((String)payload);
+        }
+        metrics.frameOut(payload);
     }
 
-    public void sendMessage(byte[] message) {
-        logger.debug("sendMessage({})", message);
-        websocket.sendMessage(message);
+    ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getQueuedMessageCount() {
+        return outbound.size();
+    }
+
+    public long getDroppedMessageCount() {
+        return outbound.getDropped();
     }
     
+    /**
+     * A callback notified when a connect completes.
+     */
+    interface ConnectCallback {
+        /**
+         * @param open true if the connection is open, false if the connect failed
+         */
+        void connectCompleted(boolean open);
+    }
+
+    /**
+     * Negotiates the extensions from the headers of the upgrade response, which are
+     * received before the connection is opened.
+     */
+    class UpgradeHandler extends WebSocketUpgradeHandler {
+        private final ConnectionSettings settings;
+        private final boolean deflateOffered;
+
+        UpgradeHandler(WebSocketUpgradeHandler.Builder builder, ConnectionSettings settings, boolean deflateOffered) {
+            super(builder);
+            this.settings = settings;
+            this.deflateOffered = deflateOffered;
+        }
+
+        @Override
+        public AsyncHandler.STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+            String extensions = headers.getHeaders().getFirstValue(PerMessageDeflate.EXTENSIONS_HEADER);
+            try {
+                deflate = PerMessageDeflate.negotiate(extensions, deflateOffered, settings, manager.getMaxMessageSize(), metrics);
+                if (deflate != null) {
+                    logger.debug("negotiated {} with {}", deflate, url);
+                }
+            } catch (IllegalArgumentException e) {
+                negotiationError = e.getMessage();
+            }
+            return super.onHeadersReceived(headers);
+        }
+    }
+
     class ClientListener implements WebSocketTextListener, WebSocketByteListener {
 
         @Override
         public void onClose(WebSocket websocket) {
             logger.debug("onClose({})", websocket);
+            closed();
         }
 
         @Override
         public void onError(Throwable t) {
             logger.error("onError({}))", t);
+            connectFailed(t);
         }
 
         @Override
         public void onOpen(WebSocket websocket) {
             logger.debug("onOpen({})", websocket);
+            opened(websocket);
         }
 
         @Override
         public void onFragment(byte[] message, boolean last) {
-            logger.warn("Not supported: onFragment(byte[] message, boolean last)");
+            logger.trace("onFragment({}, {})", message, last);
+            // the websocket reassembles the fragments up to the maximum message size,
+            // the complete message is passed to onMessage after the last fragment
         }
 
         @Override
         public void onMessage(byte[] message) {
             logger.debug("onMessage({})", message);
-            logger.warn("Not supported: onMessage(byte[] message");
-            //TODO add the byte[] posting mode
+            metrics.frameIn(message);
+            for (Map.Entry<String, WebsocketClientGenericBindingProvider> entry : getListeners().entrySet()) {
+                manager.postMessage(entry.getKey(), message, entry.getValue());
+            }
         }
 
         @Override
         public void onFragment(String message, boolean last) {
-            logger.warn("Not supported onFragment(String message, boolean last)");
+            logger.trace("onFragment({}, {})", message, last);
+            // the websocket reassembles the fragments up to the maximum message size,
+            // the complete message is passed to onMessage after the last fragment
         }
 
         @Override
         public void onMessage(String message) {
             logger.debug("onMessage({})", message);
-            for (Map.Entry<String, WebsocketClientBindingProvider> entry : listeners.entrySet()) {
-                manager.postMessage(entry.getKey(), message, entry.getValue());
+            metrics.frameIn(message);
+            PendingRequests.Request request = requests.complete(message);
+            if (request != null) {
+                manager.postReply(request.getItemName(), message, request.getProvider());
+                return;
             }
+            router.route(message, manager);
         }
     }
 }
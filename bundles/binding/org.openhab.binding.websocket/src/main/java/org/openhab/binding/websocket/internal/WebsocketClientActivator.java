@@ -8,8 +8,11 @@
  */
 package org.openhab.binding.websocket.internal;
 
+import org.openhab.core.transform.TransformationService;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,11 +29,33 @@ public final class WebsocketClientActivator implements BundleActivator {
         
     private static BundleContext context;
 
+    // invalidates the transformation services resolved by the binding configurations when the services change
+    private ServiceTracker transformationTracker;
+
     /**
      * Called whenever the OSGi framework starts our bundle
      */
     public void start(BundleContext bc) throws Exception {
         context = bc;
+        transformationTracker = new ServiceTracker(bc, TransformationService.class.getName(), null) {
+            @Override
+            public Object addingService(ServiceReference reference) {
+                TransformationHandle.invalidateAll();
+                return super.addingService(reference);
+            }
+
+            @Override
+            public void modifiedService(ServiceReference reference, Object service) {
+                TransformationHandle.invalidateAll();
+            }
+
+            @Override
+            public void removedService(ServiceReference reference, Object service) {
+                TransformationHandle.invalidateAll();
+                super.removedService(reference, service);
+            }
+        };
+        transformationTracker.open();
         logger.debug("WebsocketClient binding has been started.");
     }
 
@@ -38,6 +63,8 @@ public final class WebsocketClientActivator implements BundleActivator {
      * Called whenever the OSGi framework stops our bundle
      */
     public void stop(BundleContext bc) throws Exception {
+        transformationTracker.close();
+        transformationTracker = null;
         context = null;
         logger.debug("WebsocketClient binding has been stopped.");
     }
@@ -10,34 +10,40 @@ package org.openhab.binding.websocket.internal;
 
 import static org.openhab.binding.websocket.internal.WebsocketClientGenericBindingProvider.CHANGED_COMMAND_KEY;
 import static org.openhab.binding.websocket.internal.WebsocketClientGenericBindingProvider.IN_COMMAND_KEY;
+import static org.openhab.binding.websocket.internal.WebsocketClientGenericBindingProvider.WILDCARD_COMMAND_KEY;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 
 import org.openhab.binding.websocket.WebsocketClientBindingProvider;
 import org.apache.commons.lang.StringUtils;
+import org.openhab.binding.common.CommandDebouncer;
+import org.openhab.binding.common.DuplicateStateFilter;
+import org.openhab.binding.common.StateParser;
 import org.openhab.core.binding.AbstractActiveBinding;
 import org.openhab.core.binding.BindingProvider;
-import org.openhab.core.items.Item;
-import org.openhab.core.library.items.ContactItem;
-import org.openhab.core.library.items.DateTimeItem;
-import org.openhab.core.library.items.NumberItem;
-import org.openhab.core.library.items.RollershutterItem;
-import org.openhab.core.library.items.SwitchItem;
-import org.openhab.core.library.types.DateTimeType;
-import org.openhab.core.library.types.DecimalType;
-import org.openhab.core.library.types.OnOffType;
-import org.openhab.core.library.types.OpenClosedType;
-import org.openhab.core.library.types.PercentType;
-import org.openhab.core.library.types.StringType;
-import org.openhab.core.transform.TransformationHelper;
-import org.openhab.core.transform.TransformationService;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
 import org.openhab.core.types.Type;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
         
@@ -49,24 +55,50 @@ import org.slf4j.LoggerFactory;
  * @author elakito
  * @since 1.6.0
  */
-public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClientBindingProvider> implements ManagedService {
+public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClientBindingProvider> 
+    implements ManagedService, ConnectionWarmup.Listener {
+
+    /** the topic of the event posted when the inbound connections have been opened after a (re)configuration */
+    public static final String READY_TOPIC = "org/openhab/binding/websocket/READY";
 
     private static final Logger logger = 
         LoggerFactory.getLogger(WebsocketClientBinding.class);
 
-    /** RegEx to extract a parse a function String <code>'(.*?)\((.*)\)'</code> */
-    private static final Pattern EXTRACT_FUNCTION_PATTERN = Pattern.compile("(.*?)\\((.*)\\)");
-
 	// flag to use the reply of the remote end to update the status of the Item receving the data
-	private static boolean updateWithResponse = true;
+	private volatile boolean updateWithResponse = true;
 
     /** 
      * the refresh interval which is used to check if the inbound connection is open
-     * (optional, defaults to 60000ms)
+     * (optional, defaults to 60000ms). Dropped connections are reconnected as soon as
+     * they close, this check only catches the connections which have never been opened.
      */
     private long refreshInterval = 60000;
 
     private WebsocketClientManager clientManager;
+
+    // the thread sending the debounced commands, not the timer of the connections as the transformations
+    // may be slow, and the debouncer conflating the outbound commands of the items with a debounce window
+    private ScheduledExecutorService debounceScheduler;
+    private volatile CommandDebouncer debouncer;
+
+    // drops the inbound updates which do not change the state of their item or null to post all updates
+    private volatile DuplicateStateFilter duplicateFilter;
+
+    // the maximum number of connects in flight while warming up or 0 to connect lazily, the time in
+    // milliseconds after which a connect counts as timed out and the time to wait for the items to settle
+    private volatile int warmupConcurrency = 16;
+    private volatile long warmupTimeout = 10000;
+    private volatile long warmupDelay = 1000;
+    // the scheduled and the running warm-up, guarded by warmupLock
+    private final Object warmupLock = new Object();
+    private Timeout warmupSchedule;
+    private ConnectionWarmup warmup;
+    // set when the first warm-up has finished
+    private volatile boolean ready;
+
+    // the outbound routes of each item by command, rebuilt whenever the binding of the item changes
+    private final Map<String, Map<Command, OutboundRoute>> outboundRoutes = 
+        new ConcurrentHashMap<String, Map<Command, OutboundRoute>>();
         
     
     public WebsocketClientBinding() {
@@ -77,6 +109,10 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
         logger.debug("activate");
         super.activate();
         clientManager.init();
+        ready = false;
+        debounceScheduler = Executors.newSingleThreadScheduledExecutor(
+            new WebsocketClientManager.NamedThreadFactory("websocket-debounce"));
+        debouncer = new CommandDebouncer(debounceScheduler);
         setProperlyConfigured(true);
     }
     
@@ -84,6 +120,10 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
         // deallocate resources here that are no longer needed and 
         // should be reset when activating this binding again
         logger.debug("deactivate");
+        cancelWarmup();
+        outboundRoutes.clear();
+        debouncer.clear();
+        debounceScheduler.shutdownNow();
         clientManager.release();
     }
 
@@ -94,6 +134,7 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
         if (bindingProvider.getItemType(itemName) != null) {
             // added
             initializeItem(itemName, bindingProvider);
+            scheduleWarmup();
         } else {
             // removed
             releaseItem(itemName);
@@ -122,21 +163,30 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
      */
     @Override
     protected void execute() {
-        // currently, we use this execute method to keep the inbound connections alive.
+        // the dropped connections are reconnected as soon as they close, so this is only a safety net
+        // for the inbound connections which have never been opened or whose reconnect got lost.
         logger.debug("execute() method is called!");
-        for (WebsocketClientBindingProvider provider : providers) {
-            for (String itemName : provider.getItemNames(IN_COMMAND_KEY)) {
-                String url = provider.getUrl(itemName);
-                logger.debug("Check websocket connection for item={} for url={}", itemName, url);
-                WebsocketClient wc = clientManager.getWebsocketClient(url);
-                if (wc != null) {
-                    try {
-                        wc.ensureConnected();
-                    } catch (Exception e) {
-                        logger.error("Failed to keep the connection open", e);
-                    }
-                } else {
-                    logger.warn("Unable to find the websocket client for {}", url);
+        if (logger.isDebugEnabled()) {
+            // not created for the statistics alone
+            InboundDispatcher dispatcher = clientManager.getDispatcherIfCreated();
+            if (dispatcher != null) {
+                logger.debug("inbound dispatcher queue depth={}, max={}, dropped={}", 
+                             dispatcher.getQueueDepth(), dispatcher.getMaxQueueDepth(), dispatcher.getRejectedCount());
+                logger.debug("inbound messages processed={}, mean time={}us, max time={}us", 
+                             dispatcher.getProcessedCount(), dispatcher.getMeanProcessingTime(), dispatcher.getMaxProcessingTime());
+            }
+            DuplicateStateFilter filter = duplicateFilter;
+            if (filter != null) {
+                logger.debug("suppressed duplicate updates={}", filter.getSuppressedCount());
+            }
+        }
+        for (WebsocketClient wc : clientManager.getAllWebsocketClients()) {
+            if (wc.hasListeners() && wc.getState() == WebsocketClient.ConnectionState.CLOSED && !wc.isReconnectScheduled()) {
+                logger.debug("Check websocket connection for url={}", wc.getUrl());
+                try {
+                    wc.ensureConnected();
+                } catch (Exception e) {
+                    logger.error("Failed to keep the connection open", e);
                 }
             }
         }
@@ -163,80 +213,133 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
         // event bus goes here. This method is only called if one of the 
         // BindingProviders provide a binding for the given 'itemName'.
         logger.debug("internalReceiveCommand() is called!");
+        DuplicateStateFilter filter = duplicateFilter;
+        if (filter != null) {
+            filter.update(itemName, newState);
+        }
         writeToWebsocket(itemName, CHANGED_COMMAND_KEY, newState);
     }
 
-    private void writeToWebsocket(String itemName, Command command, Type type) {
-        WebsocketClientBindingProvider provider = findFirstMatchingBindingProvider(itemName, command);
+    private void writeToWebsocket(final String itemName, final Command command, final Type type) {
+        Map<Command, OutboundRoute> routes = outboundRoutes.get(itemName);
+        OutboundRoute route = null;
+        if (routes != null) {
+            route = routes.get(command);
+            if (route == null && !CHANGED_COMMAND_KEY.equals(command)) {
+                route = routes.get(WILDCARD_COMMAND_KEY);
+            }
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debug("writeToWebsocket: item={}, command={}, type={}", itemName, command, type);
         }
         
-        if (provider == null) {
+        if (route == null) {
             logger.trace("doesn't find matching binding provider [itemName={}, command={}]", itemName, command);
             return;
         }
-        String url = provider.getUrl(itemName, command);
-        String transformation = provider.getTransformation(itemName, command);
-        String transformedMessage = transformMessage(transformation, command.toString());
+        if (route.debounce > 0) {
+            final OutboundRoute debouncedRoute = route;
+            debouncer.submit(itemName, route.debounce, CommandDebouncer.isBypass(route.debounceBypass, command), new Runnable() {
+                public void run() {
+                    writeToWebsocket(itemName, debouncedRoute, command, type);
+                }
+            });
+        } else {
+            writeToWebsocket(itemName, route, command, type);
+        }
+    }
+
+    private void writeToWebsocket(String itemName, OutboundRoute route, Command command, Type type) {
         try {
-            WebsocketClient wc = clientManager.getWebsocketClient(url);
+            Object message;
+            if (route.binaryCodec == null) {
+                message = route.transformation.transform(command.toString());
+            } else if (route.transformation.isIdentity()) {
+                // encode the value directly without converting it to a string first
+                message = route.binaryCodec.encode(type);
+            } else {
+                message = route.binaryCodec.encode(route.transformation.transform(type.toString()));
+            }
+            WebsocketClient wc = route.client;
             wc.ensureConnected();
-            wc.sendTextMessage(transformedMessage);
+            if (route.correlationKey != null) {
+                wc.sendRequest(itemName, (String) message, route.correlationKey, route.provider);
+            } else {
+                wc.send(itemName, message);
+            }
         } catch (Exception e) {
-            logger.error("Unabled to send message to " + url);
+            logger.error("Unabled to send message to " + route.client.getUrl() + ": " + e.getMessage());
         }
     }
     
     //TODO this is for testing for now
-    void postToBus(String itemName, String message, WebsocketClientBindingProvider provider) {
-        String transformedMessage = transformMessage(provider.getTransformation(itemName), message);
-        
-        Class<? extends Item> itemType = provider.getItemType(itemName);
-        State state = createState(itemType, transformedMessage);
-                
-        if (state != null) {
-            eventPublisher.postUpdate(itemName, state);
+    void postToBus(String itemName, String message, WebsocketClientGenericBindingProvider provider) {
+        if (provider.getBinaryCodec(itemName) != null) {
+            logger.trace("ignoring text message for binary item={}", itemName);
+            return;
         }
+        postTextToBus(itemName, message, provider);
     }
 
-    private State createState(Class<? extends Item> itemType, String message) {
-        try {
-            if (itemType.isAssignableFrom(NumberItem.class)) {
-                return DecimalType.valueOf(message);
-            } else if (itemType.isAssignableFrom(ContactItem.class)) {
-                return OpenClosedType.valueOf(message);
-            } else if (itemType.isAssignableFrom(SwitchItem.class)) {
-                return OnOffType.valueOf(message);
-            } else if (itemType.isAssignableFrom(RollershutterItem.class)) {
-                return PercentType.valueOf(message);
-            } else if (itemType.isAssignableFrom(DateTimeItem.class)) {
-                return DateTimeType.valueOf(message);
-            } else {
-                return StringType.valueOf(message);
+    void postToBus(String itemName, byte[] message, WebsocketClientGenericBindingProvider provider) {
+        BinaryCodec binaryCodec = provider.getBinaryCodec(itemName);
+        if (binaryCodec == null) {
+            logger.trace("ignoring binary message for text item={}", itemName);
+            return;
+        }
+        if (binaryCodec.isText()) {
+            String text = binaryCodec.decodeText(message);
+            if (text == null) {
+                logger.debug("Couldn't decode binary message for item '{}': frame of {} bytes is shorter than the offset",
+                             itemName, message.length);
+                return;
             }
+            postTextToBus(itemName, text, provider);
+            return;
+        }
+        State state;
+        try {
+            state = binaryCodec.decode(provider.getItemType(itemName), message);
         } catch (Exception e) {
-            logger.debug("Couldn't create state of type '{}' for value '{}'", itemType, message);
-            return StringType.valueOf(message);
+            logger.debug("Couldn't decode binary message for item '{}': {}", itemName, e.getMessage());
+            return;
         }
+        postUpdate(itemName, state);
     }
 
+    /**
+     * Posts the reply to a request of the item as any other inbound text message of the item.
+     */
+    void postReplyToBus(String itemName, String message, WebsocketClientGenericBindingProvider provider) {
+        if (!updateWithResponse) {
+            logger.trace("ignoring the reply for item={}", itemName);
+            return;
+        }
+        postToBus(itemName, message, provider);
+    }
 
-    private WebsocketClientBindingProvider findFirstMatchingBindingProvider(String itemName, Command command) {
-        WebsocketClientBindingProvider firstMatchingProvider = null;
+    private void postTextToBus(String itemName, String message, WebsocketClientGenericBindingProvider provider) {
+        TransformationHandle transformation = provider.getTransformationHandle(itemName);
+        String transformedMessage = transformation != null ? transformation.transform(message) : message;
         
-        for (WebsocketClientBindingProvider provider : providers) {
-            String url = provider.getUrl(itemName, command);
-            if (url != null) {
-                firstMatchingProvider = provider;
-                break;
-            }
+        StateParser stateParser = provider.getStateParser(itemName);
+        State state = stateParser != null ? stateParser.parse(transformedMessage) : null;
+                
+        if (state != null) {
+            postUpdate(itemName, state);
         }
-        
-        return firstMatchingProvider;
     }
-    
+
+    private void postUpdate(String itemName, State state) {
+        DuplicateStateFilter filter = duplicateFilter;
+        if (filter != null && !filter.accept(itemName, state)) {
+            logger.trace("suppressing the unchanged state {} of item={}", state, itemName);
+            return;
+        }
+        eventPublisher.postUpdate(itemName, state);
+    }
+
     /**
      * @{inheritDoc}
      */
@@ -251,6 +354,130 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
             if (StringUtils.isNotBlank(refreshIntervalString)) {
                 refreshInterval = Long.parseLong(refreshIntervalString);
             }
+
+            // all the websocket connections share one client with a fixed number of io threads,
+            // configured with <bindingName>:ioThreads=<count> and <bindingName>:connectTimeout=<timeoutInMs>
+            int ioThreads = WebsocketClientManager.DEFAULT_IO_THREADS;
+            String ioThreadsString = (String) config.get("ioThreads");
+            if (StringUtils.isNotBlank(ioThreadsString)) {
+                ioThreads = Integer.parseInt(ioThreadsString);
+            }
+            int connectTimeout = WebsocketClientManager.DEFAULT_CONNECT_TIMEOUT;
+            String connectTimeoutString = (String) config.get("connectTimeout");
+            if (StringUtils.isNotBlank(connectTimeoutString)) {
+                connectTimeout = Integer.parseInt(connectTimeoutString);
+            }
+            clientManager.configure(ioThreads, connectTimeout);
+
+            // the inbound messages are processed off the io threads by <bindingName>:dispatchThreads=<count> workers,
+            // each queuing up to <bindingName>:dispatchQueueSize=<count> messages
+            int dispatchThreads = WebsocketClientManager.DEFAULT_DISPATCH_THREADS;
+            String dispatchThreadsString = (String) config.get("dispatchThreads");
+            if (StringUtils.isNotBlank(dispatchThreadsString)) {
+                dispatchThreads = Integer.parseInt(dispatchThreadsString);
+            }
+            int dispatchQueueSize = WebsocketClientManager.DEFAULT_DISPATCH_QUEUE_SIZE;
+            String dispatchQueueSizeString = (String) config.get("dispatchQueueSize");
+            if (StringUtils.isNotBlank(dispatchQueueSizeString)) {
+                dispatchQueueSize = Integer.parseInt(dispatchQueueSizeString);
+            }
+            clientManager.configureDispatcher(dispatchThreads, dispatchQueueSize);
+
+            // the fragmented inbound messages are reassembled up to <bindingName>:maxMessageSize=<sizeInBytes>,
+            // a connection receiving a larger message is closed and reconnected
+            String maxMessageSizeString = (String) config.get("maxMessageSize");
+            if (StringUtils.isNotBlank(maxMessageSizeString)) {
+                clientManager.setMaxMessageSize(Integer.parseInt(maxMessageSizeString));
+            }
+
+            // the commands sent while a connection is not open are queued unless
+            // <bindingName>:queueWhileConnecting=false is set, in which case they are rejected
+            String queueWhileConnectingString = (String) config.get("queueWhileConnecting");
+            if (StringUtils.isNotBlank(queueWhileConnectingString)) {
+                clientManager.setQueueWhileConnecting(Boolean.parseBoolean(queueWhileConnectingString));
+            }
+
+            // each connection queues up to <bindingName>:outboundQueueSize=<count> commands, and
+            // <bindingName>:outboundOverflow=dropOldest|dropNewest|latestPerItem decides which is dropped when full
+            String outboundQueueSizeString = (String) config.get("outboundQueueSize");
+            if (StringUtils.isNotBlank(outboundQueueSizeString)) {
+                clientManager.setOutboundQueueSize(Integer.parseInt(outboundQueueSizeString));
+            }
+            String outboundOverflowString = (String) config.get("outboundOverflow");
+            if (StringUtils.isNotBlank(outboundOverflowString)) {
+                try {
+                    clientManager.setOutboundOverflowPolicy(OutboundQueue.OverflowPolicy.parse(outboundOverflowString));
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigurationException("outboundOverflow", e.getMessage());
+                }
+            }
+
+            // a dropped connection is reconnected after <bindingName>:reconnectDelay=<delayInMs>, doubling
+            // with each failed attempt up to <bindingName>:reconnectMaxDelay=<delayInMs>
+            long reconnectDelay = WebsocketClientManager.DEFAULT_RECONNECT_DELAY;
+            String reconnectDelayString = (String) config.get("reconnectDelay");
+            if (StringUtils.isNotBlank(reconnectDelayString)) {
+                reconnectDelay = Long.parseLong(reconnectDelayString);
+            }
+            long reconnectMaxDelay = WebsocketClientManager.DEFAULT_RECONNECT_MAX_DELAY;
+            String reconnectMaxDelayString = (String) config.get("reconnectMaxDelay");
+            if (StringUtils.isNotBlank(reconnectMaxDelayString)) {
+                reconnectMaxDelay = Long.parseLong(reconnectMaxDelayString);
+            }
+            clientManager.setReconnectDelay(reconnectDelay, reconnectMaxDelay);
+
+            // a connection no longer used by any item is closed after <bindingName>:releaseGracePeriod=<delayInMs>,
+            // so that the items removed and added again while reloading the items keep their connections
+            long releaseGracePeriod = WebsocketClientManager.DEFAULT_RELEASE_GRACE_PERIOD;
+            String releaseGracePeriodString = (String) config.get("releaseGracePeriod");
+            if (StringUtils.isNotBlank(releaseGracePeriodString)) {
+                releaseGracePeriod = Long.parseLong(releaseGracePeriodString);
+            }
+            clientManager.setReleaseGracePeriod(releaseGracePeriod);
+
+            // the replies to the outbound commands with a correlation key update their item
+            // unless <bindingName>:updateWithResponse=false is set
+            String updateWithResponseString = (String) config.get("updateWithResponse");
+            if (StringUtils.isNotBlank(updateWithResponseString)) {
+                updateWithResponse = Boolean.parseBoolean(updateWithResponseString);
+            }
+
+            // the inbound updates not changing the state of their item are dropped if <bindingName>:suppressDuplicates=true,
+            // an unchanged state is posted again after <bindingName>:duplicateRefresh=<intervalInMs> if set
+            DuplicateStateFilter previousFilter = duplicateFilter;
+            if (Boolean.parseBoolean((String) config.get("suppressDuplicates"))) {
+                long duplicateRefresh = 0;
+                String duplicateRefreshString = (String) config.get("duplicateRefresh");
+                if (StringUtils.isNotBlank(duplicateRefreshString)) {
+                    duplicateRefresh = Long.parseLong(duplicateRefreshString);
+                }
+                duplicateFilter = new DuplicateStateFilter(duplicateRefresh);
+            } else {
+                duplicateFilter = null;
+            }
+            if (previousFilter != null) {
+                logger.debug("suppressed {} duplicate updates", previousFilter.getSuppressedCount());
+            }
+
+            // the settings of the connections to specific urls are grouped by an alias, 
+            // <bindingName>:<alias>.url=<url> and <bindingName>:<alias>.<setting>=<value>
+            clientManager.setConnectionSettings(ConnectionSettings.parse(config));
+
+            // the inbound connections are opened once the items have settled for <bindingName>:warmupDelay=<delayInMs>,
+            // with up to <bindingName>:warmupConcurrency=<count> connects in flight, 0 to connect them lazily, each
+            // counting as timed out after <bindingName>:warmupTimeout=<timeoutInMs>
+            String warmupConcurrencyString = (String) config.get("warmupConcurrency");
+            if (StringUtils.isNotBlank(warmupConcurrencyString)) {
+                warmupConcurrency = Integer.parseInt(warmupConcurrencyString);
+            }
+            String warmupTimeoutString = (String) config.get("warmupTimeout");
+            if (StringUtils.isNotBlank(warmupTimeoutString)) {
+                warmupTimeout = Long.parseLong(warmupTimeoutString);
+            }
+            String warmupDelayString = (String) config.get("warmupDelay");
+            if (StringUtils.isNotBlank(warmupDelayString)) {
+                warmupDelay = Long.parseLong(warmupDelayString);
+            }
             
             // read further config parameters here ...
             setProperlyConfigured(true);
@@ -260,63 +487,199 @@ public class WebsocketClientBinding extends AbstractActiveBinding<WebsocketClien
                 initializeItem(itemName, provider);
             }
         }
+        scheduleWarmup();
     }
 
-    private void initializeItem(String itemName, WebsocketClientBindingProvider provider) {
+    /**
+     * Schedules the warm-up of the inbound connections after the warm-up delay, postponing
+     * the scheduled warm-up so that the items added in bulk are connected at once.
+     */
+    private void scheduleWarmup() {
+        if (warmupConcurrency <= 0) {
+            return;
+        }
+        synchronized (warmupLock) {
+            if (warmupSchedule != null) {
+                warmupSchedule.cancel();
+            }
+            HashedWheelTimer timer = clientManager.getTimerIfActive();
+            if (timer == null) {
+                logger.debug("not warming up the websocket connections of the deactivated binding");
+                warmupSchedule = null;
+                return;
+            }
+            warmupSchedule = timer.newTimeout(new TimerTask() {
+                public void run(Timeout timeout) {
+                    startWarmup(timeout);
+                }
+            }, warmupDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void startWarmup(Timeout schedule) {
+        HashedWheelTimer timer = clientManager.getTimerIfActive();
+        if (timer == null) {
+            return;
+        }
+        List<WebsocketClient> clients = new ArrayList<WebsocketClient>();
+        for (WebsocketClient wc : clientManager.getAllWebsocketClients()) {
+            if (wc.hasListeners() && wc.getState() == WebsocketClient.ConnectionState.CLOSED && !wc.isReconnectScheduled()) {
+                clients.add(wc);
+            }
+        }
+        ConnectionWarmup w = new ConnectionWarmup(clients, warmupConcurrency, warmupTimeout, timer, this);
+        synchronized (warmupLock) {
+            if (warmupSchedule != schedule) {
+                // cancelled or postponed meanwhile
+                return;
+            }
+            warmupSchedule = null;
+            if (warmup != null) {
+                // the connects already started go on, only the result of the new warm-up is reported
+                warmup.cancel();
+            }
+            warmup = w;
+        }
+        logger.debug("warming up {} websocket connections with concurrency={}", clients.size(), warmupConcurrency);
+        w.start();
+    }
+
+    private void cancelWarmup() {
+        synchronized (warmupLock) {
+            if (warmupSchedule != null) {
+                warmupSchedule.cancel();
+                warmupSchedule = null;
+            }
+            if (warmup != null) {
+                warmup.cancel();
+                warmup = null;
+            }
+        }
+    }
+
+    public void warmupFinished(ConnectionWarmup w) {
+        synchronized (warmupLock) {
+            if (warmup != w) {
+                return;
+            }
+            warmup = null;
+        }
+        ready = true;
+        logger.info("Warmed up {} websocket connections in {} ms: {} opened, {} failed, {} timed out",
+                    new Object[] { w.getConnectionCount(), w.getDuration(), w.getOpenedCount(), 
+                                   w.getFailedCount(), w.getTimedOutCount() });
+        postReadyEvent(w);
+    }
+
+    /**
+     * Posts the {@link #READY_TOPIC} event with the counts and the duration of the warm-up.
+     */
+    private void postReadyEvent(ConnectionWarmup w) {
+        BundleContext context = WebsocketClientActivator.getContext();
+        if (context == null) {
+            return;
+        }
+        ServiceReference reference = context.getServiceReference(EventAdmin.class.getName());
+        if (reference == null) {
+            return;
+        }
+        try {
+            EventAdmin eventAdmin = (EventAdmin) context.getService(reference);
+            if (eventAdmin != null) {
+                Dictionary<String, Object> properties = new Hashtable<String, Object>();
+                properties.put("connections", w.getConnectionCount());
+                properties.put("opened", w.getOpenedCount());
+                properties.put("failed", w.getFailedCount());
+                properties.put("timedOut", w.getTimedOutCount());
+                properties.put("duration", w.getDuration());
+                eventAdmin.postEvent(new Event(READY_TOPIC, properties));
+            }
+        } finally {
+            context.ungetService(reference);
+        }
+    }
+
+    /**
+     * Returns true once the inbound connections have been warmed up after the binding was activated.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the number of suppressed duplicate updates since the binding was last configured.
+     */
+    long getSuppressedUpdateCount() {
+        DuplicateStateFilter filter = duplicateFilter;
+        return filter != null ? filter.getSuppressedCount() : 0;
+    }
+
+    private void initializeItem(String itemName, WebsocketClientBindingProvider bindingProvider) {
+        // the binding reads the resolved configuration of the items off the generic provider
+        WebsocketClientGenericBindingProvider provider = (WebsocketClientGenericBindingProvider) bindingProvider;
         logger.debug("initialize item={}", itemName);
+        // the urls of the item, only the changes to its current urls are applied to the connections
+        Map<String, WebsocketClientGenericBindingProvider> urls = new HashMap<String, WebsocketClientGenericBindingProvider>();
         for (Command command : provider.getCommands(itemName)) {
             String url = provider.getUrl(itemName, command);
-            clientManager.add(itemName, url, IN_COMMAND_KEY.equals(command) ? provider : null);
-            //REVISIT may connect the websocket for the inbound here instead of doing it in the execute method as of now
+            if (IN_COMMAND_KEY.equals(command)) {
+                urls.put(url, provider);
+            } else if (!urls.containsKey(url)) {
+                urls.put(url, null);
+            }
         }
+        Map<String, WebsocketClient> clients = clientManager.update(itemName, urls);
+        Map<Command, OutboundRoute> routes = new HashMap<Command, OutboundRoute>();
+        for (Command command : provider.getCommands(itemName)) {
+            if (!IN_COMMAND_KEY.equals(command)) {
+                WebsocketClient wc = clients.get(provider.getUrl(itemName, command));
+                routes.put(command, new OutboundRoute(wc, provider.getTransformationHandle(itemName, command), 
+                                                      provider.getBinaryCodec(itemName, command), 
+                                                      provider.getDebounce(itemName, command), 
+                                                      provider.getDebounceBypass(itemName, command),
+                                                      provider.getCorrelationKey(itemName, command), provider));
+            }
+        }
+        outboundRoutes.put(itemName, Collections.unmodifiableMap(routes));
     }
         
     private void releaseItem(String itemName) {
         logger.debug("release item={}", itemName);
-        clientManager.remove(itemName);
-    }
-        
-    protected String transformMessage(String transformation, String message) {
-        logger.debug("transforming message {} using transform {}", message, transformation);
-        String transformedMessage;
-        try {
-            String[] parts = splitTransformationConfig(transformation);
-            String transformationType = parts[0];
-            String transformationFunction = parts[1];
-            
-            TransformationService transformationService = 
-                TransformationHelper.getTransformationService(WebsocketClientActivator.getContext(), transformationType);
-            if (transformationService != null) {
-                transformedMessage = transformationService.transform(transformationFunction, message);
-            } else {
-                transformedMessage = message;
-                logger.warn("couldn't transform message because transformationService of type '{}' is unavailable", transformationType);
-            }
+        outboundRoutes.remove(itemName);
+        CommandDebouncer d = debouncer;
+        if (d != null) {
+            d.remove(itemName);
         }
-        catch (Exception te) {
-            logger.error("transformation throws exception [transformation="
-                         + transformation + ", message=" + message + "]", te);
-
-            // in case of an error we return the message without any transformation
-            transformedMessage = message;
+        clientManager.remove(itemName);
+        DuplicateStateFilter filter = duplicateFilter;
+        if (filter != null) {
+            filter.remove(itemName);
         }
-
-        logger.debug("transformed message is '{}'", transformedMessage);
-        return transformedMessage;
     }
 
-    protected String[] splitTransformationConfig(String transformation) {
-        Matcher matcher = EXTRACT_FUNCTION_PATTERN.matcher(transformation);
+    /**
+     * The resolved client, transformation, codec and debounce window to send the commands of an item.
+     */
+    private static class OutboundRoute {
+        private final WebsocketClient client;
+        private final TransformationHandle transformation;
+        private final BinaryCodec binaryCodec;
+        private final long debounce;
+        private final List<String> debounceBypass;
+        // the key of the correlation id of the replies or null if the commands are not requests
+        private final RouteKey correlationKey;
+        private final WebsocketClientGenericBindingProvider provider;
 
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("given transformation function '" + transformation + "' does not follow the expected pattern '<function>(<pattern>)'");
+        OutboundRoute(WebsocketClient client, TransformationHandle transformation, BinaryCodec binaryCodec, 
+                      long debounce, List<String> debounceBypass, RouteKey correlationKey,
+                      WebsocketClientGenericBindingProvider provider) {
+            this.client = client;
+            this.transformation = transformation;
+            this.binaryCodec = binaryCodec;
+            this.debounce = debounce;
+            this.debounceBypass = debounceBypass;
+            this.correlationKey = correlationKey;
+            this.provider = provider;
         }
-        matcher.reset();
-
-        matcher.find();                 
-        String type = matcher.group(1);
-        String pattern = matcher.group(2);
-        
-        return new String[] { type, pattern };
     }
 }
@@ -9,12 +9,18 @@
 package org.openhab.binding.websocket.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
+import org.openhab.binding.common.BindingOptions;
+import org.openhab.binding.common.ItemIndex;
+import org.openhab.binding.common.StateParser;
 import org.openhab.binding.websocket.WebsocketClientBindingProvider;
 import org.openhab.core.binding.BindingConfig;
 import org.openhab.core.items.Item;
@@ -36,6 +42,26 @@ import org.slf4j.LoggerFactory;
  * websocketclient="<[ws://192.168.0.1:3000/service:'some text']" - for String Items
  * websocketclient=">[ON:ws://192.168.0.1:3000/service:'some text'], >[OFF:ws://192.168.0.1:3000/service:'some other command']"
  * 
+ * The url may be followed by options in the form {<name>=<value>&<name>=<value>}:
+ * 
+ * binary=<format> - exchange binary frames in the given {@link BinaryCodec} format, e.g. uint16 or float32le
+ * offset=<offset> - the offset of the value in the inbound binary frames
+ * 
+ * routeKey=<key> - the JSON pointer (e.g. /device/id) or regular expression with a group extracting the route 
+ *                  value of the inbound text messages, see {@link RouteKey}
+ * routeValue=<value> - the route value of the inbound text messages passed to the item
+ * debounce=<window>, debounceBypass=<command>,<command> - see {@link BindingOptions}
+ * correlationKey=<key> - send the outbound text messages as requests, their ${correlationId} placeholder
+ *                  is replaced by a unique id and the reply whose key, as routeKey, extracts this id
+ *                  updates only this item
+ * 
+ * The command * binds all the commands which are not bound explicitly.
+ * 
+ * websocketclient="<[ws://192.168.0.1:3000/sensor{binary=uint16le&offset=2}:'']" - for Number Items
+ * websocketclient="<[ws://192.168.0.1:3000/telemetry{routeKey=/id&routeValue=kitchen}:'JSONPATH($.temp)']"
+ * websocketclient=">[*:ws://192.168.0.1:3000/dimmer{debounce=250}:'']" - for Dimmer Items
+ * websocketclient=">[*:ws://192.168.0.1:3000/rpc{correlationKey=/id}:'MAP(rpc.map)']"
+ * 
  * @author elakito
  * @since 1.6.0
  */
@@ -50,6 +76,14 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
     private static final Pattern BASE_CONFIG_PATTERN = Pattern.compile("([<|>]\\[.*?\\])*");
     private static final Pattern  CONFIG_PATTERN = Pattern.compile("(<|>)\\[(.*?):?(wss?://.*):(?!\\d+)\'?(.*?)\'?\\]");
 
+    /** the names of the options which may follow the url */
+    private static final List<String> OPTION_NAMES = Arrays.asList("binary", "offset", "routeKey", "routeValue", 
+                                                                       BindingOptions.DEBOUNCE, BindingOptions.DEBOUNCE_BYPASS, "correlationKey");
+
+    // the items by the commands and the urls of their bindings, kept up to date as the configurations change
+    private final ItemIndex<Command> commandIndex = new ItemIndex<Command>();
+    private final ItemIndex<String> urlIndex = new ItemIndex<String>();
+
     /**
      * {@inheritDoc}
      */
@@ -88,6 +122,7 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
                 
         WebsocketClientBindingConfig config = new WebsocketClientBindingConfig();
         config.itemType = item.getClass();
+        config.stateParser = StateParser.forItemType(config.itemType);
         
         Matcher matcher = BASE_CONFIG_PATTERN.matcher(bindingConfig);
         
@@ -118,13 +153,67 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
                 String commandStr = matcher.group(2);
                 String url = matcher.group(3);
                 String transformation = matcher.group(4);
+                Map<String, String> options = BindingOptions.parse(url, OPTION_NAMES);
+                url = BindingOptions.stripOptions(url);
                 if (logger.isDebugEnabled()) {
-                        logger.debug("adding a binding for direction={}, command={}, url={}, transformation={}",
-                        directionStr, commandStr, url, transformation);
+                        logger.debug("adding a binding for direction={}, command={}, url={}, transformation={}, options={}",
+                        directionStr, commandStr, url, transformation, options);
                 }
 
                 configElement = new WebsocketClientBindingConfigElement(url, transformation);
-                Command command = commandStr.length() == 0 ? IN_COMMAND_KEY : createCommandFromString(item, commandStr);
+                try {
+                    configElement.transformationHandle = TransformationHandle.valueOf(transformation);
+                } catch (IllegalArgumentException e) {
+                    logger.warn("the messages are passed on without any transformation: {}", e.getMessage());
+                    configElement.transformationHandle = TransformationHandle.valueOf(null);
+                }
+                String binary = options.get("binary");
+                if (binary != null) {
+                    int offset = 0;
+                    if (options.get("offset") != null) {
+                        try {
+                            offset = Integer.parseInt(options.get("offset"));
+                        } catch (NumberFormatException e) {
+                            throw new BindingConfigParseException("invalid offset option in '" + bindingConfig + "': " + e.getMessage());
+                        }
+                        if (offset < 0) {
+                            throw new BindingConfigParseException("negative offset option in '" + bindingConfig + "'");
+                        }
+                    }
+                    try {
+                        configElement.binaryCodec = BinaryCodec.valueOf(binary, offset);
+                    } catch (IllegalArgumentException e) {
+                        throw new BindingConfigParseException("invalid binary option in '" + bindingConfig + "': " + e.getMessage());
+                    }
+                }
+                String routeKey = options.get("routeKey");
+                String routeValue = options.get("routeValue");
+                if (routeKey != null || routeValue != null) {
+                    if (routeKey == null || routeValue == null) {
+                        throw new BindingConfigParseException("routeKey and routeValue must be given together in '" + bindingConfig + "'");
+                    }
+                    try {
+                        configElement.routeKey = RouteKey.valueOf(routeKey);
+                    } catch (IllegalArgumentException e) {
+                        throw new BindingConfigParseException("invalid routeKey option in '" + bindingConfig + "': " + e.getMessage());
+                    }
+                    configElement.routeValue = routeValue;
+                }
+                configElement.debounce = BindingOptions.getDebounce(options, bindingConfig);
+                configElement.debounceBypass = BindingOptions.getDebounceBypass(options);
+                String correlationKey = options.get("correlationKey");
+                if (correlationKey != null) {
+                    if (commandStr.length() == 0 || binary != null) {
+                        throw new BindingConfigParseException("correlationKey only applies to outbound text messages in '" + bindingConfig + "'");
+                    }
+                    try {
+                        configElement.correlationKey = RouteKey.valueOf(correlationKey);
+                    } catch (IllegalArgumentException e) {
+                        throw new BindingConfigParseException("invalid correlationKey option in '" + bindingConfig + "': " + e.getMessage());
+                    }
+                }
+                Command command = commandStr.length() == 0 ? IN_COMMAND_KEY 
+                    : WILDCARD_COMMAND_KEY.toString().equals(commandStr) ? WILDCARD_COMMAND_KEY : createCommandFromString(item, commandStr);
 
                 config.put(command, configElement);
             }
@@ -134,11 +223,19 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
     class WebsocketClientBindingConfig extends HashMap<Command, WebsocketClientBindingConfigElement>implements BindingConfig {
         private static final long serialVersionUID = -108946006112637386L;
         Class<? extends Item> itemType;
+        StateParser stateParser;
     }
     
     static class WebsocketClientBindingConfigElement implements BindingConfig {
         private String url;
         private String transformation;
+        private TransformationHandle transformationHandle;
+        private BinaryCodec binaryCodec;
+        private RouteKey routeKey;
+        private String routeValue;
+        private long debounce;
+        private List<String> debounceBypass;
+        private RouteKey correlationKey;
         
         public WebsocketClientBindingConfigElement(String url, String transformation) {
             this.url = url;
@@ -153,9 +250,39 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
             return transformation;
         }
         
+        public TransformationHandle getTransformationHandle() {
+            return transformationHandle;
+        }
+        
+        public BinaryCodec getBinaryCodec() {
+            return binaryCodec;
+        }
+        
+        public RouteKey getRouteKey() {
+            return routeKey;
+        }
+        
+        public String getRouteValue() {
+            return routeValue;
+        }
+        
+        public long getDebounce() {
+            return debounce;
+        }
+        
+        public List<String> getDebounceBypass() {
+            return debounceBypass;
+        }
+
+        public RouteKey getCorrelationKey() {
+            return correlationKey;
+        }
+        
         @Override
         public String toString() {
-            return "WebsocketClientBindingConfigElement [url=" + url + ", transformation=" + transformation + "]";
+            return "WebsocketClientBindingConfigElement [url=" + url + ", transformation=" + transformation 
+                + ", binaryCodec=" + binaryCodec + ", routeKey=" + routeKey + ", routeValue=" + routeValue 
+                + ", debounce=" + debounce + ", debounceBypass=" + debounceBypass + ", correlationKey=" + correlationKey + "]";
         }
         
     }
@@ -192,16 +319,101 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
         return getTransformation(itemName, IN_COMMAND_KEY);
     }
 
+    TransformationHandle getTransformationHandle(String itemName, Command command) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getTransformationHandle() : null;
+    }
+
+    TransformationHandle getTransformationHandle(String itemName) {
+        return getTransformationHandle(itemName, IN_COMMAND_KEY);
+    }
+
+    BinaryCodec getBinaryCodec(String itemName, Command command) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getBinaryCodec() : null;
+    }
+
+    BinaryCodec getBinaryCodec(String itemName) {
+        return getBinaryCodec(itemName, IN_COMMAND_KEY);
+    }
+
+    @Override
+    public long getDebounce(String itemName, Command command) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getDebounce() : 0;
+    }
+
+    @Override
+    public List<String> getDebounceBypass(String itemName, Command command) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getDebounceBypass() : null;
+    }
+
+    RouteKey getCorrelationKey(String itemName, Command command) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(command) != null ? config.get(command).getCorrelationKey() : null;
+    }
+
+    RouteKey getRouteKey(String itemName) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(IN_COMMAND_KEY) != null ? config.get(IN_COMMAND_KEY).getRouteKey() : null;
+    }
+
+    @Override
+    public String getRouteValue(String itemName) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null && config.get(IN_COMMAND_KEY) != null ? config.get(IN_COMMAND_KEY).getRouteValue() : null;
+    }
+
     @Override
     public List<String> getItemNames(Command command) {
-        List<String> bindings = new ArrayList<String>();
-        for (String itemName : bindingConfigs.keySet()) {
-            WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
-            if (config.containsKey(command)) {
-                bindings.add(itemName);
+        return commandIndex.get(command);
+    }
+
+    @Override
+    public List<String> getItemNamesByUrl(String url) {
+        return urlIndex.get(url);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addBindingConfig(Item item, BindingConfig config) {
+        unindex(item.getName());
+        index(item.getName(), (WebsocketClientBindingConfig) config);
+        super.addBindingConfig(item, config);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeConfigurations(String context) {
+        Set<Item> items = contextMap.get(context);
+        if (items != null) {
+            for (Item item : items) {
+                unindex(item.getName());
+            }
+        }
+        super.removeConfigurations(context);
+    }
+
+    private void index(String itemName, WebsocketClientBindingConfig config) {
+        for (Map.Entry<Command, WebsocketClientBindingConfigElement> entry : config.entrySet()) {
+            commandIndex.add(entry.getKey(), itemName);
+            urlIndex.add(entry.getValue().getUrl(), itemName);
+        }
+    }
+
+    private void unindex(String itemName) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        if (config != null) {
+            for (Map.Entry<Command, WebsocketClientBindingConfigElement> entry : config.entrySet()) {
+                commandIndex.remove(entry.getKey(), itemName);
+                urlIndex.remove(entry.getValue().getUrl(), itemName);
             }
         }
-        return bindings;
     }
 
     @Override
@@ -210,6 +422,11 @@ public class WebsocketClientGenericBindingProvider extends AbstractGenericBindin
         return config != null ? config.itemType : null;
     }
 
+    StateParser getStateParser(String itemName) {
+        WebsocketClientBindingConfig config = (WebsocketClientBindingConfig) bindingConfigs.get(itemName);
+        return config != null ? config.stateParser : null;
+    }
+
     @Override
     public List<Command> getCommands(String itemName) {
         List<Command> commands = new ArrayList<Command>();
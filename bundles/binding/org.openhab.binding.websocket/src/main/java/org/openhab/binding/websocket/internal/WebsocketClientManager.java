@@ -1,61 +1,373 @@
 package org.openhab.binding.websocket.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.openhab.binding.websocket.WebsocketClientBindingProvider;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.providers.netty.NettyAsyncHttpProviderConfig;
 
 //REVISIT if this is a good way of managing the websockets used by all the configured items
 class WebsocketClientManager {
+    private static Logger logger = LoggerFactory.getLogger(WebsocketClientManager.class); 
+
+    static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors();
+    static final int DEFAULT_CONNECT_TIMEOUT = 60000;
+    static final long DEFAULT_RECONNECT_DELAY = 1000;
+    static final long DEFAULT_RECONNECT_MAX_DELAY = 60000;
+    static final int DEFAULT_OUTBOUND_QUEUE_SIZE = 100;
+    static final int DEFAULT_DISPATCH_THREADS = Runtime.getRuntime().availableProcessors();
+    static final int DEFAULT_DISPATCH_QUEUE_SIZE = 1000;
+    static final long DEFAULT_RELEASE_GRACE_PERIOD = 5000;
+
+    private static final Random random = new Random();
+
     private WebsocketClientBinding clientBinding;
     // a map to store a client for the given url
-    private Map<String, WebsocketClient> urlclients;
-    // a map to store all clients associted for the given itemName
-    private Map<String, List<WebsocketClient>> itemclients;
+    private volatile ConcurrentMap<String, WebsocketClient> urlclients;
+    // a map to store all clients associted for the given itemName, each list is guarded by itself
+    private volatile ConcurrentMap<String, List<WebsocketClient>> itemclients;
+
+    // the number of netty io worker threads shared by all the websocket connections
+    private int ioThreads = DEFAULT_IO_THREADS;
+    // the connect timeout in milliseconds used for all the websocket connections
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    // the initial and the maximum delay in milliseconds before reconnecting a dropped connection
+    private volatile long reconnectDelay = DEFAULT_RECONNECT_DELAY;
+    private volatile long reconnectMaxDelay = DEFAULT_RECONNECT_MAX_DELAY;
+    // the number of workers and their queue size dispatching the inbound messages to the items
+    private int dispatchThreads = DEFAULT_DISPATCH_THREADS;
+    private int dispatchQueueSize = DEFAULT_DISPATCH_QUEUE_SIZE;
+    private volatile InboundDispatcher dispatcher;
+    // set once the binding is deactivated, the inbound messages arriving afterwards are dropped
+    private volatile boolean released;
+    private final AtomicLong droppedAfterRelease = new AtomicLong();
+    // the maximum size of a reassembled inbound message or 0 to use the websocket's default
+    private volatile int maxMessageSize;
+    // whether the messages sent while not connected are queued or rejected
+    private volatile boolean queueWhileConnecting = true;
+    // the capacity and the overflow policy of the outbound queue of each connection
+    private volatile int outboundQueueSize = DEFAULT_OUTBOUND_QUEUE_SIZE;
+    private volatile OutboundQueue.OverflowPolicy outboundOverflowPolicy = OutboundQueue.OverflowPolicy.DROP_OLDEST;
+    // the time in milliseconds a client released by its last item is kept open
+    private volatile long releaseGracePeriod = DEFAULT_RELEASE_GRACE_PERIOD;
+    // the settings of the connections configured for specific urls
+    private volatile Map<String, ConnectionSettings> connectionSettings = Collections.emptyMap();
+    // the http client, its netty channel factory and timer shared by all the websocket clients
+    private AsyncHttpClient asyncHttpClient;
+    private NioClientSocketChannelFactory channelFactory;
+    private HashedWheelTimer timer;
+    private ExecutorService callbackExecutor;
 
     public WebsocketClientManager(WebsocketClientBinding clientBinding) {
         this.clientBinding = clientBinding;
     }
 
     /**
-     * Add a websocket client for the specified url if there is previously no
-     * websocket client with this url has been added for this item.
+     * Sets the settings of the shared http client. The settings are applied when the shared
+     * client is created on the first connect, so they take effect for this binding's lifetime.
+     * 
+     * @param ioThreads
+     * @param connectTimeout
+     */
+    public synchronized void configure(int ioThreads, int connectTimeout) {
+        if (asyncHttpClient != null && (ioThreads != this.ioThreads || connectTimeout != this.connectTimeout)) {
+            logger.info("The shared websocket client is already running, the new settings will be used after restarting the binding");
+        }
+        this.ioThreads = ioThreads;
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setQueueWhileConnecting(boolean queueWhileConnecting) {
+        this.queueWhileConnecting = queueWhileConnecting;
+    }
+
+    public boolean isQueueWhileConnecting() {
+        return queueWhileConnecting;
+    }
+
+    /**
+     * Sets the settings of the inbound dispatcher. The settings are applied when the dispatcher
+     * is created on the first inbound message, so they take effect for this binding's lifetime.
+     * 
+     * @param dispatchThreads
+     * @param dispatchQueueSize
+     */
+    public synchronized void configureDispatcher(int dispatchThreads, int dispatchQueueSize) {
+        this.dispatchThreads = dispatchThreads;
+        this.dispatchQueueSize = dispatchQueueSize;
+    }
+
+    /**
+     * Returns the dispatcher of the inbound messages, creating it when needed.
+     * 
+     * @return the dispatcher or null once the binding is deactivated
+     */
+    InboundDispatcher getDispatcher() {
+        InboundDispatcher d = dispatcher;
+        if (d == null) {
+            synchronized (this) {
+                d = dispatcher;
+                if (d == null && !released) {
+                    logger.debug("creating the inbound dispatcher with dispatchThreads={}, dispatchQueueSize={}", 
+                                 dispatchThreads, dispatchQueueSize);
+                    d = dispatcher = new InboundDispatcher(dispatchThreads, dispatchQueueSize);
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Returns the dispatcher of the inbound messages without creating it.
+     *
+     * @return the dispatcher or null if no inbound message has been dispatched yet
+     */
+    InboundDispatcher getDispatcherIfCreated() {
+        return dispatcher;
+    }
+
+    /**
+     * Returns the number of inbound messages dropped because they arrived after the binding was deactivated.
+     */
+    long getDroppedAfterReleaseCount() {
+        return droppedAfterRelease.get();
+    }
+
+    /**
+     * Runs the task on the dispatcher's worker of the item or drops it once the binding is deactivated.
+     */
+    private void dispatch(String itemName, Runnable task) {
+        InboundDispatcher d = getDispatcher();
+        if (d == null) {
+            long count = droppedAfterRelease.incrementAndGet();
+            logger.debug("dropped inbound message for item={} after the binding was deactivated, {} messages dropped so far", 
+                         itemName, count);
+            return;
+        }
+        d.dispatch(itemName, task);
+    }
+
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    public void setOutboundQueueSize(int outboundQueueSize) {
+        this.outboundQueueSize = outboundQueueSize;
+    }
+
+    public int getOutboundQueueSize() {
+        return outboundQueueSize;
+    }
+
+    public void setOutboundOverflowPolicy(OutboundQueue.OverflowPolicy outboundOverflowPolicy) {
+        this.outboundOverflowPolicy = outboundOverflowPolicy;
+    }
+
+    public OutboundQueue.OverflowPolicy getOutboundOverflowPolicy() {
+        return outboundOverflowPolicy;
+    }
+
+    public void setConnectionSettings(Map<String, ConnectionSettings> connectionSettings) {
+        this.connectionSettings = connectionSettings;
+    }
+
+    /**
+     * Returns the settings configured for the specified url or the default settings.
+     */
+    public ConnectionSettings getConnectionSettings(String url) {
+        ConnectionSettings settings = connectionSettings.get(url);
+        return settings != null ? settings : ConnectionSettings.DEFAULT;
+    }
+
+    public void setReleaseGracePeriod(long releaseGracePeriod) {
+        this.releaseGracePeriod = releaseGracePeriod;
+    }
+
+    public void setReconnectDelay(long reconnectDelay, long reconnectMaxDelay) {
+        this.reconnectDelay = reconnectDelay;
+        this.reconnectMaxDelay = reconnectMaxDelay;
+    }
+
+    /**
+     * Schedules a reconnect of the specified client. The delay doubles with each failed attempt
+     * up to the configured maximum and is randomized so that the clients of a restarted server
+     * do not all reconnect at once.
+     * 
+     * @param wc
+     * @param attempts the number of failed attempts since the connection was last open
+     * @return the scheduled reconnect
+     */
+    Timeout scheduleReconnect(final WebsocketClient wc, int attempts) {
+        long delay = reconnectDelay << Math.min(attempts, 30);
+        if (delay <= 0 || delay > reconnectMaxDelay) {
+            delay = reconnectMaxDelay;
+        }
+        // use a random delay between the half and the full backoff delay
+        delay = delay / 2 + (long)(random.nextDouble() * (delay / 2));
+        logger.debug("reconnecting to {} in {} ms", wc.getUrl(), delay);
+        return getTimer().newTimeout(new TimerTask() {
+            public void run(Timeout timeout) throws Exception {
+                wc.reconnect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the timer shared by all the websocket clients, creating it when needed.
+     * 
+     * @return the shared timer
+     */
+    synchronized HashedWheelTimer getTimer() {
+        if (timer == null) {
+            timer = new HashedWheelTimer(new NamedThreadFactory("websocket-timer"));
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the shared timer unless the binding is deactivated, so that a task running late
+     * does not create a new timer after the release.
+     * 
+     * @return the shared timer or null once the binding is deactivated
+     */
+    synchronized HashedWheelTimer getTimerIfActive() {
+        return released ? null : getTimer();
+    }
+
+    /**
+     * Returns the http client shared by all the websocket clients, creating it when needed.
+     * All the connections are multiplexed over its single netty boss and io worker pool.
      * 
+     * @return the shared http client
+     */
+    synchronized AsyncHttpClient getAsyncHttpClient() {
+        if (asyncHttpClient == null) {
+            logger.debug("creating the shared websocket client with ioThreads={}, connectTimeout={}", ioThreads, connectTimeout);
+            ThreadFactory threadFactory = new NamedThreadFactory("websocket-io");
+            channelFactory = new NioClientSocketChannelFactory(Executors.newCachedThreadPool(threadFactory), 
+                                                               Executors.newCachedThreadPool(threadFactory), 1, ioThreads);
+            callbackExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("websocket-callback"));
+
+            NettyAsyncHttpProviderConfig providerConfig = new NettyAsyncHttpProviderConfig();
+            providerConfig.addProperty(NettyAsyncHttpProviderConfig.SOCKET_CHANNEL_FACTORY, channelFactory);
+            providerConfig.setHashedWheelTimer(getTimer());
+            AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()
+                .setConnectionTimeoutInMs(connectTimeout)
+                .setExecutorService(callbackExecutor)
+                .setAsyncHttpClientProviderConfig(providerConfig)
+                .build();
+            asyncHttpClient = new AsyncHttpClient(config);
+        }
+        return asyncHttpClient;
+    }
+
+    /**
+     * Sets the websocket clients of the specified item to the clients of the given urls. Only the
+     * difference to the current urls of the item is applied: the clients of the new urls are added,
+     * the clients of the urls the item no longer uses are released and the clients the item keeps
+     * are only updated, so that reloading an unchanged item does not touch its connections.
+     *
+     * The clients are shared by url and reference counted by item. The registry is only locked
+     * per item, so that the items of different urls or of the same url are updated concurrently.
+     *
      * @param itemName
-     * @param url
-     * @param listener
+     * @param urls the urls of the item with the provider of its inbound binding or null for an outbound url
+     * @return the clients of the item by url
      */
-    public WebsocketClient add(String itemName, String url, WebsocketClientBindingProvider provider) {
-        WebsocketClient wc = null;
-        synchronized (this) {
+    public Map<String, WebsocketClient> update(String itemName, Map<String, WebsocketClientGenericBindingProvider> urls) {
+        for (;;) {
             List<WebsocketClient> icls = itemclients.get(itemName);
             if (icls == null) {
-                icls = new LinkedList<WebsocketClient>();
-                itemclients.put(itemName, icls);
+                List<WebsocketClient> newIcls = new ArrayList<WebsocketClient>();
+                icls = itemclients.putIfAbsent(itemName, newIcls);
+                if (icls == null) {
+                    icls = newIcls;
+                }
             }
-            for (WebsocketClient iwc : icls) {
-                if (url.equals(iwc.getUrl())) {
-                    wc = iwc;
-                    break;
+            synchronized (icls) {
+                if (itemclients.get(itemName) != icls) {
+                    // the item was removed concurrently, start over with its new list
+                    continue;
+                }
+                Map<String, WebsocketClient> clients = new HashMap<String, WebsocketClient>();
+                for (Iterator<WebsocketClient> it = icls.iterator(); it.hasNext(); ) {
+                    WebsocketClient iwc = it.next();
+                    if (urls.containsKey(iwc.getUrl())) {
+                        clients.put(iwc.getUrl(), iwc);
+                    } else {
+                        it.remove();
+                        iwc.unregister(itemName);
+                        release(iwc);
+                    }
+                }
+                for (Map.Entry<String, WebsocketClientGenericBindingProvider> entry : urls.entrySet()) {
+                    WebsocketClient wc = clients.get(entry.getKey());
+                    if (wc == null) {
+                        // the reference of this item to the client of the url
+                        wc = retain(entry.getKey());
+                        icls.add(wc);
+                        clients.put(entry.getKey(), wc);
+                    }
+                    if (entry.getValue() != null) {
+                        wc.register(itemName, entry.getValue());
+                    } else {
+                        // the item may have had an inbound binding to this url before
+                        wc.unregister(itemName);
+                    }
                 }
+                return clients;
             }
+        }
+    }
+
+    /**
+     * Returns the client of the url with its reference count incremented, creating it when needed.
+     */
+    private WebsocketClient retain(String url) {
+        for (;;) {
+            WebsocketClient wc = urlclients.get(url);
             if (wc == null) {
-                wc = urlclients.get(url);
+                WebsocketClient newWc = new WebsocketClient(url, this);
+                wc = urlclients.putIfAbsent(url, newWc);
                 if (wc == null) {
-                    //TODO supply a custom configuration
-                    wc = new WebsocketClient(url, null, this);
-                    urlclients.put(url,  wc);
+                    wc = newWc;
+                    wc.getMetrics().register();
                 }
-                icls.add(wc);
             }
-            // increment the reference count for the inbound item referencing this client
-            wc.register(itemName, provider);
+            if (wc.retain()) {
+                return wc;
+            }
+            // disposed after its last item was released, replace it once its metrics are unregistered
+            // so that the metrics of the new client can be registered under the same name
+            wc.getMetrics().unregister();
+            urlclients.remove(url, wc);
         }
-        return wc;
     }
 
     /**
@@ -64,17 +376,52 @@ class WebsocketClientManager {
      * @param itemName
      */
     public void remove(String itemName) {
-        synchronized (this) {
-            List<WebsocketClient> icls = itemclients.remove(itemName);
-            if (icls != null) {
-                for (WebsocketClient iwc : icls) {
-                    iwc.unregister(itemName);
-                    if (iwc.getReferenceCount() == 0) {
-                        iwc.close();
-                        urlclients.remove(iwc.getUrl());
-                    }
-                }
+        List<WebsocketClient> icls = itemclients.remove(itemName);
+        if (icls == null) {
+            return;
+        }
+        synchronized (icls) {
+            for (WebsocketClient iwc : icls) {
+                iwc.unregister(itemName);
+                release(iwc);
             }
+            icls.clear();
+        }
+    }
+
+    /**
+     * Releases the reference of an item to the client. The client released by its last item is kept
+     * open for the grace period, so that an item removed and added again during a reload of the items
+     * keeps its connection, and closed afterwards unless another item has retained it meanwhile.
+     */
+    private void release(final WebsocketClient wc) {
+        if (!wc.release()) {
+            return;
+        }
+        long grace = releaseGracePeriod;
+        if (grace <= 0) {
+            closeIfUnused(wc);
+            return;
+        }
+        logger.debug("closing {} in {} ms unless it is used again", wc.getUrl(), grace);
+        getTimer().newTimeout(new TimerTask() {
+            public void run(Timeout timeout) throws Exception {
+                closeIfUnused(wc);
+            }
+        }, grace, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeIfUnused(WebsocketClient wc) {
+        // fails if the client was retained again, a later update creates a new client once it is disposed
+        if (wc.dispose()) {
+            // unregistered before the client can be replaced, as retain does for a disposed client
+            wc.getMetrics().unregister();
+            // null once the binding is deactivated, the clients are closed by then
+            ConcurrentMap<String, WebsocketClient> clients = urlclients;
+            if (clients != null) {
+                clients.remove(wc.getUrl(), wc);
+            }
+            wc.close();
         }
     }
         
@@ -83,16 +430,63 @@ class WebsocketClientManager {
     }
         
     public Collection<WebsocketClient> getAllWebsocketClients() {
-        return urlclients.values();
+        // null once the binding is deactivated
+        ConcurrentMap<String, WebsocketClient> clients = urlclients;
+        if (clients == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<WebsocketClient>(clients.values());
     }
 
-    public void postMessage(String itemName, String message, WebsocketClientBindingProvider provider) {
-        clientBinding.postToBus(itemName, message, provider);
+    /**
+     * Posts the message to the event bus on the dispatcher's worker of the item.
+     * 
+     * @param itemName
+     * @param message
+     * @param provider
+     */
+    public void postMessage(final String itemName, final String message, final WebsocketClientGenericBindingProvider provider) {
+        dispatch(itemName, new Runnable() {
+            public void run() {
+                clientBinding.postToBus(itemName, message, provider);
+            }
+        });
+    }
+
+    /**
+     * Posts the message to the event bus on the dispatcher's worker of the item.
+     * 
+     * @param itemName
+     * @param message
+     * @param provider
+     */
+    public void postReply(final String itemName, final String message, final WebsocketClientGenericBindingProvider provider) {
+        dispatch(itemName, new Runnable() {
+            public void run() {
+                clientBinding.postReplyToBus(itemName, message, provider);
+            }
+        });
+    }
+
+    /**
+     * Posts the message to the event bus on the dispatcher's worker of the item.
+     *
+     * @param itemName
+     * @param message
+     * @param provider
+     */
+    public void postMessage(final String itemName, final byte[] message, final WebsocketClientGenericBindingProvider provider) {
+        dispatch(itemName, new Runnable() {
+            public void run() {
+                clientBinding.postToBus(itemName, message, provider);
+            }
+        });
     }
         
     public void init() {
-        urlclients = Collections.synchronizedMap(new HashMap<String, WebsocketClient>());       
-        itemclients = new HashMap<String, List<WebsocketClient>>();     
+        released = false;
+        urlclients = new ConcurrentHashMap<String, WebsocketClient>();
+        itemclients = new ConcurrentHashMap<String, List<WebsocketClient>>();
     }
         
     public void release() {
@@ -101,5 +495,44 @@ class WebsocketClientManager {
         }
         urlclients = null;
         itemclients = null;
+        synchronized (this) {
+            // set under the lock of getDispatcher, so that no dispatcher is created after this one is shut down
+            released = true;
+            if (asyncHttpClient != null) {
+                // the channel factory and timer are supplied externally, so the client leaves them to us
+                asyncHttpClient.close();
+                channelFactory.releaseExternalResources();
+                callbackExecutor.shutdown();
+                asyncHttpClient = null;
+                channelFactory = null;
+                callbackExecutor = null;
+            }
+            if (timer != null) {
+                timer.stop();
+                timer = null;
+            }
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+                dispatcher = null;
+            }
+        }
+    }
+
+    /**
+     * A thread factory creating named daemon threads so that the shared threads are easy to spot.
+     */
+    static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger index = new AtomicInteger();
+
+        public NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 }
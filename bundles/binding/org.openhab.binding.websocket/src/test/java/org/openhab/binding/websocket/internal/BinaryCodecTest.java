@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+
+/**
+ * @since 1.6.0
+ */
+public class BinaryCodecTest {
+
+    @Test
+    public void decodesSignedAndUnsignedValuesInBothByteOrders() {
+        byte[] frame = { (byte) 0xff, (byte) 0xfe };
+        assertEquals(new DecimalType(-2), BinaryCodec.valueOf("int16", 0).decode(NumberItem.class, frame));
+        assertEquals(new DecimalType(65534), BinaryCodec.valueOf("uint16", 0).decode(NumberItem.class, frame));
+        assertEquals(new DecimalType(-257), BinaryCodec.valueOf("int16le", 0).decode(NumberItem.class, frame));
+        assertEquals(new DecimalType(65279), BinaryCodec.valueOf("uint16le", 0).decode(NumberItem.class, frame));
+    }
+
+    @Test
+    public void decodesTheValueAtTheOffset() {
+        byte[] frame = { 9, 9, 0, 0, 1, 0 };
+        assertEquals(new DecimalType(256), BinaryCodec.valueOf("uint32", 2).decode(NumberItem.class, frame));
+        assertEquals(OnOffType.ON, BinaryCodec.valueOf("uint8", 4).decode(SwitchItem.class, frame));
+        assertEquals(OnOffType.OFF, BinaryCodec.valueOf("uint8", 5).decode(SwitchItem.class, frame));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFramesTooShortForTheValue() {
+        BinaryCodec.valueOf("uint32", 2).decode(NumberItem.class, new byte[5]);
+    }
+
+    @Test
+    public void encodesTheLimitsOfEachIntegerFormat() {
+        assertArrayEquals(new byte[] { (byte) 0x80 }, BinaryCodec.valueOf("int8", 0).encode("-128"));
+        assertArrayEquals(new byte[] { 0x7f }, BinaryCodec.valueOf("int8", 0).encode("127"));
+        assertArrayEquals(new byte[] { (byte) 0xff }, BinaryCodec.valueOf("uint8", 0).encode("255"));
+        assertArrayEquals(new byte[] { (byte) 0xff, (byte) 0xff }, BinaryCodec.valueOf("uint16", 0).encode("65535"));
+        assertArrayEquals(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff },
+                          BinaryCodec.valueOf("uint32", 0).encode("4294967295"));
+        assertArrayEquals(new byte[] { (byte) 0x80, 0, 0, 0, 0, 0, 0, 0 },
+                          BinaryCodec.valueOf("int64", 0).encode(Long.toString(Long.MIN_VALUE)));
+        assertArrayEquals(new byte[] { 0x34, 0x12 }, BinaryCodec.valueOf("int16le", 0).encode(new DecimalType(0x1234)));
+    }
+
+    @Test
+    public void rejectsValuesOutOfTheRangeOfTheFormat() {
+        assertOutOfRange("int8", "128");
+        assertOutOfRange("int8", "-129");
+        assertOutOfRange("uint8", "256");
+        assertOutOfRange("uint8", "-1");
+        assertOutOfRange("int16", "32768");
+        assertOutOfRange("uint16", "65536");
+        assertOutOfRange("int32", "2147483648");
+        assertOutOfRange("uint32", "4294967296");
+        assertOutOfRange("int64", "9223372036854775808");
+        // integers only
+        assertOutOfRange("int32", "1.5");
+    }
+
+    @Test
+    public void roundTripsFloats() {
+        BinaryCodec codec = BinaryCodec.valueOf("float32le", 0);
+        assertEquals(new DecimalType(1.5), codec.decode(NumberItem.class, codec.encode("1.5")));
+        codec = BinaryCodec.valueOf("float64", 0);
+        assertEquals(new DecimalType(-0.25), codec.decode(NumberItem.class, codec.encode("-0.25")));
+    }
+
+    @Test
+    public void decodesTextAfterTheOffset() {
+        byte[] frame = { 1, 'o', 'k' };
+        assertEquals("ok", BinaryCodec.valueOf("utf8", 1).decodeText(frame));
+        assertEquals("016f6b", BinaryCodec.valueOf("hex", 0).decodeText(frame));
+        assertEquals("", BinaryCodec.valueOf("hex", 3).decodeText(frame));
+        assertNull(BinaryCodec.valueOf("utf8", 4).decodeText(frame));
+    }
+
+    @Test
+    public void rejectsUnsupportedFormatsAndNegativeOffsets() {
+        for (String format : new String[] { "int12", "uint64", "float16", "bits8", "int" }) {
+            try {
+                BinaryCodec.valueOf(format, 0);
+                fail("accepted format " + format);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            BinaryCodec.valueOf("uint8", -1);
+            fail("accepted a negative offset");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertOutOfRange(String format, String value) {
+        try {
+            BinaryCodec.valueOf(format, 0).encode(value);
+            fail(format + " accepted " + value);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.events.EventPublisher;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives the inbound path of the binding, from the listener of the connections through the router
+ * and the dispatcher to the event bus, with the messages of many connections and items, and reports
+ * the sustained throughput, the latency percentiles and the memory taken by the items.
+ *
+ * The messages are passed to the listener of the clients in process, so the measurements cover the
+ * binding's own dispatch path and not the network. The producers send as fast as they can, so the
+ * latency includes the time the messages wait in the queues of the dispatcher.
+ *
+ * @since 1.6.0
+ */
+public class InboundLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(InboundLoadTest.class);
+
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES = 100000;
+    private static final long TIMEOUT = 60000;
+
+    private WebsocketClientBinding binding;
+    private WebsocketClientManager manager;
+    private WebsocketClientGenericBindingProvider provider;
+    private RecordingEventPublisher publisher;
+    private final List<WebsocketClient> clients = new ArrayList<WebsocketClient>();
+
+    @Before
+    public void setUp() {
+        binding = new WebsocketClientBinding();
+        publisher = new RecordingEventPublisher();
+        binding.setEventPublisher(publisher);
+        manager = new WebsocketClientManager(binding);
+        manager.init();
+        // large enough a queue for the producers not to overtake the workers, unless a test sets its own
+        manager.configureDispatcher(WebsocketClientManager.DEFAULT_DISPATCH_THREADS, MESSAGES);
+        provider = new WebsocketClientGenericBindingProvider();
+    }
+
+    @After
+    public void tearDown() {
+        manager.release();
+    }
+
+    @Test
+    public void oneConnectionWithTenItems() throws Exception {
+        run(1, 10, 0, 0);
+    }
+
+    @Test
+    public void oneConnectionWithTenThousandItems() throws Exception {
+        run(1, 10000, 0, 0);
+    }
+
+    @Test
+    public void hundredConnectionsWithTenThousandItems() throws Exception {
+        run(100, 10000, 0, 0);
+    }
+
+    @Test
+    public void thousandConnectionsWithTenThousandItems() throws Exception {
+        run(1000, 10000, 0, 0);
+    }
+
+    @Test
+    public void unroutedMessagesAreNotPosted() throws Exception {
+        // every fourth message concerns no item
+        run(10, 1000, 4, 0);
+    }
+
+    @Test
+    public void slowEventBusDropsTheOverflowOfTheDispatcher() throws Exception {
+        manager.configureDispatcher(2, 100);
+        run(10, 1000, 0, 20000);
+    }
+
+    /**
+     * Sends the messages to the items spread over the given number of connections and checks that
+     * every routed message is posted once, in order per item, unless the dispatcher dropped it.
+     *
+     * @param urls the number of connections
+     * @param items the number of items, routed by the id of the messages
+     * @param unroutedEvery every how many messages one concerns no item or 0 for none
+     * @param eventBusDelay the time in nanoseconds the event bus takes to post an update
+     */
+    private void run(int urls, int items, int unroutedEvery, long eventBusDelay) throws Exception {
+        publisher.delay = eventBusDelay;
+        long heapBefore = usedHeap();
+        final WebsocketClient.ClientListener[] listeners = new WebsocketClient.ClientListener[urls];
+        for (int u = 0; u < urls; u++) {
+            WebsocketClient client = new WebsocketClient("ws://localhost:1/load" + u, manager);
+            clients.add(client);
+            listeners[u] = client.new ClientListener();
+        }
+        for (int i = 0; i < items; i++) {
+            String itemName = "item" + i;
+            provider.processBindingConfiguration("load", new StringItem(itemName),
+                "<[ws://localhost:1/load" + (i % urls) + "{routeKey=/id&routeValue=" + itemName + "}:'']");
+            clients.get(i % urls).register(itemName, provider);
+        }
+        long heapPerItem = (usedHeap() - heapBefore) / items;
+
+        final String[] ids = new String[items];
+        for (int i = 0; i < items; i++) {
+            ids[i] = "item" + i;
+        }
+        final long[] sent = new long[MESSAGES];
+        final boolean[] routed = new boolean[MESSAGES];
+        int routedCount = 0;
+        for (int n = 0; n < MESSAGES; n++) {
+            routed[n] = unroutedEvery == 0 || n % unroutedEvery != 0;
+            if (routed[n]) {
+                routedCount++;
+            }
+        }
+        publisher.expect(sent);
+
+        // each producer, like the io thread of a connection, passes on the messages of its own connections
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        long start = System.nanoTime();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            final int itemCount = items;
+            final int urlCount = urls;
+            futures.add(producers.submit(new Callable<Void>() {
+                public Void call() {
+                    for (int n = 0; n < MESSAGES; n++) {
+                        int item = n % itemCount;
+                        if (item % urlCount % PRODUCERS != producer) {
+                            continue;
+                        }
+                        String id = routed[n] ? ids[item] : "unknown";
+                        String message = "{\"id\":\"" + id + "\",\"seq\":" + n + "}";
+                        sent[n] = System.nanoTime();
+                        listeners[item % urlCount].onMessage(message);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        producers.shutdown();
+        long sendTime = System.nanoTime() - start;
+
+        InboundDispatcher dispatcher = manager.getDispatcherIfCreated();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (dispatcher.getProcessedCount() + dispatcher.getRejectedCount() < routedCount
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        long totalTime = System.nanoTime() - start;
+
+        long processed = dispatcher.getProcessedCount();
+        long rejected = dispatcher.getRejectedCount();
+        assertEquals(routedCount, processed + rejected);
+        assertEquals(processed, publisher.posted.get());
+        assertEquals(0, publisher.unexpected.get());
+        assertEquals(0, publisher.outOfOrder.get());
+        if (eventBusDelay == 0) {
+            assertEquals(0, rejected);
+        } else {
+            assertTrue("the slow event bus dropped no message", rejected > 0);
+        }
+
+        long[] latencies = publisher.latencies();
+        Arrays.sort(latencies);
+        logger.info("{} connections, {} items: sent {} msg/s, posted {} msg/s, dropped {}, "
+                    + "latency p50={}us p99={}us p999={}us, heap per item {} bytes",
+                    new Object[] { urls, items, MESSAGES * 1000000000L / sendTime, processed * 1000000000L / totalTime,
+                                   rejected, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                                   percentile(latencies, 0.999), heapPerItem });
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1000L;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Records the latency of each update from the time its message was passed to the listener and
+     * checks that the updates of each item are posted in the order of their messages.
+     */
+    private static class RecordingEventPublisher implements EventPublisher {
+        private static final RouteKey SEQ = RouteKey.valueOf("/seq");
+
+        private volatile long delay;
+        private volatile long[] sent;
+        private long[] latency;
+        private final AtomicLong posted = new AtomicLong();
+        private final AtomicLong unexpected = new AtomicLong();
+        private final AtomicLong outOfOrder = new AtomicLong();
+        // the last sequence number posted per item, each item is posted by a single worker
+        private final ConcurrentMap<String, Integer> last = new ConcurrentHashMap<String, Integer>();
+
+        void expect(long[] sent) {
+            this.latency = new long[sent.length];
+            this.sent = sent;
+        }
+
+        long[] latencies() {
+            long[] result = new long[(int) posted.get()];
+            int i = 0;
+            for (long l : latency) {
+                if (l > 0 && i < result.length) {
+                    result[i++] = l;
+                }
+            }
+            return Arrays.copyOf(result, i);
+        }
+
+        public void postUpdate(String itemName, State newState) {
+            long now = System.nanoTime();
+            String seq = SEQ.extract(newState.toString());
+            if (seq == null) {
+                unexpected.incrementAndGet();
+                return;
+            }
+            int n = Integer.parseInt(seq);
+            latency[n] = Math.max(1, now - sent[n]);
+            Integer previous = last.put(itemName, n);
+            if (previous != null && previous >= n) {
+                outOfOrder.incrementAndGet();
+            }
+            posted.incrementAndGet();
+            long end = now + delay;
+            while (delay > 0 && System.nanoTime() < end) {
+                // a slow event bus
+            }
+        }
+
+        public void sendCommand(String itemName, Command command) {
+            unexpected.incrementAndGet();
+        }
+
+        public void postCommand(String itemName, Command command) {
+            unexpected.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.websocket.internal.OutboundQueue.OverflowPolicy;
+
+/**
+ * @since 1.6.0
+ */
+public class OutboundQueueTest {
+    private HashedWheelTimer timer;
+    private PendingRequests requests;
+    private OutboundQueue queue;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer();
+        requests = new PendingRequests(new ConnectionMetrics(new WebsocketClient("ws://localhost:1/test", null)));
+        queue = new OutboundQueue(requests);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void dropOldestMakesRoomForTheNewMessage() {
+        assertTrue(queue.offer("a", "1", null, 2, OverflowPolicy.DROP_OLDEST));
+        assertTrue(queue.offer("b", "2", null, 2, OverflowPolicy.DROP_OLDEST));
+        assertTrue(queue.offer("c", "3", null, 2, OverflowPolicy.DROP_OLDEST));
+
+        assertEquals(1, queue.getDropped());
+        assertEquals("2", queue.poll().getPayload());
+        assertEquals("3", queue.poll().getPayload());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void dropNewestRejectsTheNewMessage() {
+        assertTrue(queue.offer("a", "1", null, 2, OverflowPolicy.DROP_NEWEST));
+        assertTrue(queue.offer("b", "2", null, 2, OverflowPolicy.DROP_NEWEST));
+        assertFalse(queue.offer("c", "3", null, 2, OverflowPolicy.DROP_NEWEST));
+
+        assertEquals(1, queue.getDropped());
+        assertEquals("1", queue.poll().getPayload());
+        assertEquals("2", queue.poll().getPayload());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void latestPerItemKeepsEveryMessageWhileNotFull() {
+        assertTrue(queue.offer("a", "1", null, 3, OverflowPolicy.LATEST_PER_ITEM));
+        assertTrue(queue.offer("a", "2", null, 3, OverflowPolicy.LATEST_PER_ITEM));
+
+        assertEquals(2, queue.size());
+        assertEquals(0, queue.getDropped());
+        assertEquals("1", queue.poll().getPayload());
+        assertEquals("2", queue.poll().getPayload());
+    }
+
+    @Test
+    public void latestPerItemReplacesTheQueuedMessageOfTheItemWhenFull() {
+        queue.offer("a", "1", null, 2, OverflowPolicy.LATEST_PER_ITEM);
+        queue.offer("b", "2", null, 2, OverflowPolicy.LATEST_PER_ITEM);
+        assertTrue(queue.offer("a", "3", null, 2, OverflowPolicy.LATEST_PER_ITEM));
+
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.size());
+        // the replaced message keeps its position
+        OutboundQueue.Frame frame = queue.poll();
+        assertEquals("a", frame.getItemName());
+        assertEquals("3", frame.getPayload());
+        assertEquals("2", queue.poll().getPayload());
+    }
+
+    @Test
+    public void latestPerItemDropsTheOldestWhenFullWithoutMessageOfTheItem() {
+        queue.offer("a", "1", null, 2, OverflowPolicy.LATEST_PER_ITEM);
+        queue.offer("b", "2", null, 2, OverflowPolicy.LATEST_PER_ITEM);
+        assertTrue(queue.offer("c", "3", null, 2, OverflowPolicy.LATEST_PER_ITEM));
+
+        assertEquals(1, queue.getDropped());
+        assertEquals("2", queue.poll().getPayload());
+        assertEquals("3", queue.poll().getPayload());
+    }
+
+    @Test
+    public void latestPerItemDoesNotCoalesceMessagesWithoutItem() {
+        queue.offer(null, "1", null, 1, OverflowPolicy.LATEST_PER_ITEM);
+        queue.offer(null, "2", null, 1, OverflowPolicy.LATEST_PER_ITEM);
+
+        assertEquals(1, queue.getDropped());
+        assertEquals("2", queue.poll().getPayload());
+    }
+
+    @Test
+    public void droppedReplacedAndClearedMessagesCancelTheirRequests() throws Exception {
+        queue.offer("a", "1", register("a"), 2, OverflowPolicy.LATEST_PER_ITEM);
+        queue.offer("b", "2", register("b"), 2, OverflowPolicy.LATEST_PER_ITEM);
+        assertEquals(2, requests.size());
+
+        // replaces the message of a
+        queue.offer("a", "3", register("a"), 2, OverflowPolicy.LATEST_PER_ITEM);
+        assertEquals(2, requests.size());
+
+        // drops the message of a, the oldest
+        queue.offer("c", "4", register("c"), 2, OverflowPolicy.DROP_OLDEST);
+        assertEquals(2, requests.size());
+
+        assertEquals(2, queue.clear());
+        assertEquals(0, requests.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    private String register(String itemName) throws Exception {
+        return requests.register(itemName, RouteKey.valueOf("/id"), null, 0, 60000, timer);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @since 1.6.0
+ */
+public class RouteKeyTest {
+
+    @Test
+    public void extractsTopLevelMember() {
+        assertEquals("kitchen", RouteKey.valueOf("/id").extract("{\"id\":\"kitchen\",\"temp\":21.5}"));
+    }
+
+    @Test
+    public void extractsNestedMemberAfterSkippedValues() {
+        String message = "{ \"meta\" : {\"id\":\"other\", \"tags\":[\"a\",{\"b\":\"}\"}]},\n"
+            + "  \"device\" : { \"name\":\"x\\\"y\", \"id\" : \"kitchen\" } }";
+        assertEquals("kitchen", RouteKey.valueOf("/device/id").extract(message));
+    }
+
+    @Test
+    public void extractsArrayElement() {
+        assertEquals("c", RouteKey.valueOf("/list/2").extract("{\"list\":[\"a\",{\"x\":[1,2]},\"c\"]}"));
+    }
+
+    @Test
+    public void extractsNumbersAndLiteralsAsText() {
+        assertEquals("42", RouteKey.valueOf("/id").extract("{\"id\":42}"));
+        assertEquals("-1.5e3", RouteKey.valueOf("/id").extract("{\"id\": -1.5e3 , \"x\":1}"));
+        assertEquals("true", RouteKey.valueOf("/on").extract("{\"on\":true}"));
+    }
+
+    @Test
+    public void unescapesStringsAndPointerTokens() {
+        assertEquals("a\"b\u00e9", RouteKey.valueOf("/id").extract("{\"id\":\"a\\\"b\\u00e9\"}"));
+        assertEquals("1", RouteKey.valueOf("/a~1b/m~0n").extract("{\"a/b\":{\"m~n\":\"1\"}}"));
+    }
+
+    @Test
+    public void returnsNullForMissingMembers() {
+        assertNull(RouteKey.valueOf("/id").extract("{\"name\":\"kitchen\"}"));
+        assertNull(RouteKey.valueOf("/id").extract("{}"));
+        assertNull(RouteKey.valueOf("/device/id").extract("{\"device\":\"kitchen\"}"));
+        assertNull(RouteKey.valueOf("/list/3").extract("{\"list\":[1,2]}"));
+        assertNull(RouteKey.valueOf("/list/x").extract("{\"list\":[1,2]}"));
+    }
+
+    @Test
+    public void returnsNullForMalformedMessages() {
+        assertNull(RouteKey.valueOf("/id").extract("{\"name\":\"kit"));
+        assertNull(RouteKey.valueOf("/id").extract("not json"));
+        assertNull(RouteKey.valueOf("/id").extract(""));
+    }
+
+    @Test
+    public void extractsFirstGroupOfRegex() {
+        RouteKey key = RouteKey.valueOf("id=(\\w+)");
+        assertEquals("kitchen", key.extract("temp=21 id=kitchen"));
+        assertNull(key.extract("temp=21"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRegexWithoutGroup() {
+        RouteKey.valueOf("id=\\w+");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyKey() {
+        RouteKey.valueOf("");
+    }
+
+    @Test
+    public void keysWithSameDefinitionAreEqual() {
+        assertEquals(RouteKey.valueOf("/device/id"), RouteKey.valueOf("/device/id"));
+        assertEquals(RouteKey.valueOf("/device/id").hashCode(), RouteKey.valueOf("/device/id").hashCode());
+    }
+}
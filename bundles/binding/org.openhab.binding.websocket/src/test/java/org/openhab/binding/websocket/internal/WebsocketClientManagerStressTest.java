@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.websocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the client registry of {@link WebsocketClientManager} from several threads at once while
+ * the grace timer closes the clients released by their last item, and checks that no client is
+ * used after it is disposed and that no client is left open once all the items are removed.
+ *
+ * @since 1.6.0
+ */
+public class WebsocketClientManagerStressTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 20000;
+    private static final int ITEMS_PER_THREAD = 4;
+    private static final String[] URLS = { "ws://localhost:1/a", "ws://localhost:1/b" };
+
+    private WebsocketClientManager manager;
+    // every client handed out by the manager during the test
+    private final Set<WebsocketClient> seen = Collections.newSetFromMap(new ConcurrentHashMap<WebsocketClient, Boolean>());
+    private final Queue<String> errors = new ConcurrentLinkedQueue<String>();
+
+    @Before
+    public void setUp() {
+        manager = new WebsocketClientManager(null);
+        manager.init();
+        manager.setReleaseGracePeriod(1);
+    }
+
+    @After
+    public void tearDown() {
+        manager.release();
+    }
+
+    @Test
+    public void concurrentUpdatesNeitherReuseDisposedNorLeakClients() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    start.await();
+                    run(thread);
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue("clients used after dispose: " + errors, errors.isEmpty());
+
+        // all the items are removed, the clients are closed once their grace period expired
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!manager.getAllWebsocketClients().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("leaked clients: " + manager.getAllWebsocketClients(), 0, manager.getAllWebsocketClients().size());
+        for (WebsocketClient wc : seen) {
+            assertTrue("client of " + wc.getUrl() + " is not closed", wc.isReleased());
+            assertEquals(0, wc.getReferenceCount());
+        }
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(
+            new ObjectName("org.openhab.binding.websocket:type=Connection,*"), null);
+        assertTrue("metrics left registered: " + names, names.isEmpty());
+    }
+
+    private void run(int thread) throws InterruptedException {
+        Random random = new Random(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String itemName = "item-" + thread + "-" + random.nextInt(ITEMS_PER_THREAD);
+            if (random.nextInt(4) == 0) {
+                manager.remove(itemName);
+            } else {
+                Map<String, WebsocketClientGenericBindingProvider> urls = new HashMap<String, WebsocketClientGenericBindingProvider>();
+                for (String url : URLS) {
+                    if (random.nextBoolean()) {
+                        urls.put(url, null);
+                    }
+                }
+                Map<String, WebsocketClient> clients = manager.update(itemName, urls);
+                for (WebsocketClient wc : clients.values()) {
+                    seen.add(wc);
+                    // the item holds a reference, so the client can neither be disposed nor closed
+                    if (wc.isReleased() || wc.getReferenceCount() == 0) {
+                        errors.add(itemName + " -> " + wc.getUrl());
+                    }
+                }
+                assertEquals(urls.keySet(), clients.keySet());
+            }
+            if (thread == 0 && i % 100 == 0) {
+                // alternates between closing the released clients right away on the releasing thread
+                // and on the next tick of the timer, so that both race with the updates of the others
+                manager.setReleaseGracePeriod(random.nextBoolean() ? 0 : 1);
+            }
+            if (i % 5000 == 0) {
+                // let the grace timeouts of the released clients expire meanwhile
+                Thread.sleep(150);
+            }
+        }
+        for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+            manager.remove("item-" + thread + "-" + i);
+        }
+    }
+}